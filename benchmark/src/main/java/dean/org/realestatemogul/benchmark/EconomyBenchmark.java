@@ -0,0 +1,93 @@
+package dean.org.realestatemogul.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import dean.org.realestatemogul.economy.BuyMode;
+import dean.org.realestatemogul.economy.Economy;
+import dean.org.realestatemogul.economy.Money;
+import dean.org.realestatemogul.entity.BuildingCatalog;
+
+/**
+ * Benchmarks for the parts of the economy that run every tick or every press.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EconomyBenchmark {
+
+    private static final long STEP = 20000000L; // One 50Hz simulation step
+
+    private final BuildingCatalog catalog = BuildingCatalog.getDefault();
+    private final int castle = catalog.indexOf("castle");
+    private Economy economy;
+    private final Money funds = new Money();
+    private final Money out = new Money();
+
+    @Setup(Level.Iteration)
+    public void setup()
+    {
+        economy = new Economy();
+        final int[] owned = new int[economy.getBuildingCount()];
+        for (int index = 0; index < owned.length; index++)
+            owned[index] = 50;
+        economy.restore(1, 30, owned);
+        funds.setLog10(40);
+    }
+
+    @Benchmark
+    public boolean tick()
+    {
+        return economy.update(STEP);
+    }
+
+    @Benchmark
+    public Money cost()
+    {
+        return catalog.getCost(castle, 250, out);
+    }
+
+    @Benchmark
+    public Money bulkCost()
+    {
+        return catalog.getTotalCost(castle, 250, 100, out);
+    }
+
+    @Benchmark
+    public int maxAffordable()
+    {
+        return catalog.getMaxAffordable(castle, 250, funds, out);
+    }
+
+    @Benchmark
+    public boolean purchase()
+    {
+        economy.earn(funds);
+        return economy.purchase(0);
+    }
+
+    @Benchmark
+    public boolean purchaseMax()
+    {
+        economy.setBuyMode(BuyMode.MAX);
+        economy.earn(funds);
+        final boolean bought = economy.purchase(5);
+        economy.setBuyMode(BuyMode.ONE);
+        return bought;
+    }
+
+}
@@ -0,0 +1,90 @@
+package dean.org.realestatemogul.benchmark;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import dean.org.realestatemogul.economy.Money;
+
+/**
+ * Benchmarks the Money type against BigDecimal for the operations the game does every tick.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneyBenchmark {
+
+    private static final MathContext CONTEXT = MathContext.DECIMAL64;
+
+    private final Money money = new Money();
+    private final Money income = new Money();
+    private final Money price = new Money();
+    private BigDecimal bigMoney;
+    private BigDecimal bigIncome;
+    private BigDecimal bigPrice;
+
+    @Setup(Level.Iteration)
+    public void setup()
+    {
+        money.setLog10(42.5);
+        income.setLog10(38.1);
+        price.setLog10(42.7);
+        bigMoney = new BigDecimal("3.16227766016838e42");
+        bigIncome = new BigDecimal("1.25892541179417e38");
+        bigPrice = new BigDecimal("5.01187233627272e42");
+    }
+
+    @Benchmark
+    public Money add()
+    {
+        return money.add(income);
+    }
+
+    @Benchmark
+    public BigDecimal addBigDecimal()
+    {
+        bigMoney = bigMoney.add(bigIncome, CONTEXT);
+        return bigMoney;
+    }
+
+    @Benchmark
+    public Money multiply()
+    {
+        return price.multiply(1.15);
+    }
+
+    @Benchmark
+    public BigDecimal multiplyBigDecimal()
+    {
+        bigPrice = bigPrice.multiply(BigDecimal.valueOf(1.15), CONTEXT);
+        return bigPrice;
+    }
+
+    @Benchmark
+    public boolean compare()
+    {
+        return money.isAtLeast(price);
+    }
+
+    @Benchmark
+    public boolean compareBigDecimal()
+    {
+        return bigMoney.compareTo(bigPrice) >= 0;
+    }
+
+}
@@ -0,0 +1,59 @@
+package dean.org.realestatemogul.benchmark;
+
+import java.text.DecimalFormat;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import dean.org.realestatemogul.economy.Money;
+import dean.org.realestatemogul.text.NumberFormatter;
+
+/**
+ * Benchmarks formatting numbers into a buffer against the DecimalFormat the game used to create every frame.
+ * Run with -Pjmh="-prof gc NumberFormatter" to confirm the buffer formatters allocate nothing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NumberFormatterBenchmark {
+
+    private final char[] buffer = new char[NumberFormatter.MAX_LENGTH];
+    private final Money large = new Money().setLog10(47.3);
+    private long value = 123456789L;
+
+    @Benchmark
+    public int grouped()
+    {
+        return NumberFormatter.formatGrouped(value++, buffer, 0);
+    }
+
+    @Benchmark
+    public int compact()
+    {
+        return NumberFormatter.formatCompact(value++ * 1000, buffer, 0);
+    }
+
+    @Benchmark
+    public int money()
+    {
+        return NumberFormatter.format(large, buffer, 0);
+    }
+
+    @Benchmark
+    public String decimalFormat()
+    {
+        return new DecimalFormat("###,###,###,###,###,###,###").format(value++);
+    }
+
+}
@@ -0,0 +1,50 @@
+package dean.org.realestatemogul.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import dean.org.realestatemogul.economy.PropertyMarket;
+
+/**
+ * Benchmarks a tick of the property market, from the catalog's handful of properties up to
+ * thousands of entries for properties spread over districts.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PropertyMarketBenchmark {
+
+    @Param({"6", "1000", "10000"})
+    private int entries;
+
+    private PropertyMarket market;
+
+    @Setup(Level.Iteration)
+    public void setup()
+    {
+        market = new PropertyMarket(entries, 1);
+    }
+
+    @Benchmark
+    public PropertyMarket tick()
+    {
+        market.tick();
+        return market;
+    }
+
+}
@@ -0,0 +1,70 @@
+package dean.org.realestatemogul.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import dean.org.realestatemogul.engine.TimingWheel;
+
+/**
+ * Benchmarks for the timing wheel with tens of thousands of timers pending, each firing timer is scheduled again
+ * so the number pending stays the same.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimingWheelBenchmark {
+
+    private static final int TIMERS = 20000; // The number of timers kept pending
+    private static final int STEP_TICKS = 2; // One 50Hz simulation step of 10ms ticks
+
+    private TimingWheel wheel;
+    private int[] periods; // The ticks between each timer firing
+    private final TimingWheel.Listener reschedule = new TimingWheel.Listener() {
+        @Override
+        public void onExpired(final int tag)
+        {
+            wheel.schedule(periods[tag], tag);
+        }
+    };
+
+    @Setup(Level.Iteration)
+    public void setup()
+    {
+        final Random random = new Random(1);
+        wheel = new TimingWheel(TIMERS + 1);
+        periods = new int[TIMERS];
+        for (int index = 0; index < TIMERS; index++)
+        {
+            periods[index] = 100 + random.nextInt(100000); // Between one second and about seventeen minutes
+            wheel.schedule(random.nextInt(periods[index]) + 1, index);
+        }
+    }
+
+    @Benchmark
+    public int step()
+    {
+        return wheel.advance(STEP_TICKS, reschedule);
+    }
+
+    @Benchmark
+    public boolean scheduleAndCancel()
+    {
+        return wheel.cancel(wheel.schedule(5000, TIMERS));
+    }
+
+}
@@ -0,0 +1,46 @@
+package dean.org.realestatemogul.economy;
+
+/**
+ * Enum for the different amounts of a property that can be bought with a single press.
+ */
+public enum BuyMode {
+
+    ONE(1, "x1"),
+    TEN(10, "x10"),
+    HUNDRED(100, "x100"),
+    MAX(0, "Max");
+
+    private int quantity;
+    private String label;
+
+    private BuyMode(final int quantity, final String label)
+    {
+        this.quantity = quantity;
+        this.label = label;
+    }
+
+    /**
+     * Gets the number of properties bought with each press.
+     * @return The number of properties, or 0 if as many as can be afforded are bought.
+     */
+    public int getQuantity()
+    {
+        return quantity;
+    }
+
+    public String getLabel()
+    {
+        return label;
+    }
+
+    /**
+     * Gets the mode that follows this one when the player cycles through them.
+     * @return The next mode.
+     */
+    public BuyMode next()
+    {
+        final BuyMode[] modes = values();
+        return modes[(ordinal() + 1) % modes.length];
+    }
+
+}
@@ -0,0 +1,607 @@
+package dean.org.realestatemogul.economy;
+
+import java.util.Arrays;
+
+import dean.org.realestatemogul.engine.TimingWheel;
+import dean.org.realestatemogul.entity.BuildingCatalog;
+import dean.org.realestatemogul.persistence.SaveState;
+
+/**
+ * The state and rules of the game's economy: the players money, the properties they own,
+ * what the properties earn and what buying more of them costs.
+ * It has no dependency on Android, so it can be driven by the game on a device or by tools
+ * and benchmarks on an ordinary JVM.
+ * Each property pays out on its own period and timed boosts expire through a timing wheel
+ * that is advanced by the game's steps, so the economy never reads a clock.
+ * Buying more of a property part way through its period pays out what's been earned so far and starts a new period,
+ * so new properties are never paid for time they weren't owned, and the time left in each period is kept across saves.
+ * Prices and rents follow a seeded property market that moves on once a second of game time.
+ */
+public class Economy {
+
+    /**
+     * The length of a tick of the economy's timers in nanoseconds, payout periods and boosts are rounded to it
+     */
+    public static final long TICK_LENGTH = 10000000L;
+
+    /**
+     * The most boosts that can run at once
+     */
+    public static final int MAX_BOOSTS = 8;
+
+    /**
+     * The ticks between each move of the property market, one second
+     */
+    public static final long MARKET_PERIOD = 100;
+
+    private final BuildingCatalog catalog; // The properties that can be bought
+    private final Money money = new Money(); // The players money
+    private final Money income = new Money(); // The amount all properties generate per second, updated when properties, rents or boosts change
+    private double baseIncome = 0; // The running total of income per second at the current rents, before boosts
+    private final double[] rentWeights; // The income per second of each property owned before rent, which the market weights rent changes by
+    private final Money scratch = new Money(); // Reused for working out prices without allocating
+    private final Money marketFunds = new Money(); // The players money in market neutral prices, reused for max mode
+    private final PropertyMarket market; // Moves each property's price and rent about, one entry per property
+    private final int[] ownedProperties; // The amount of each property the player owns
+    private final Money[] prices; // The price of buying the current quantity of each property
+    private final int[] quantities; // The number of each property a purchase will buy
+    private final long[] priceVersions; // The version of the prices each property's price was worked out at
+    private long priceVersion = 0; // Bumped whenever every price is out of date, each is worked out again when it's next read
+    private BuyMode buyMode = BuyMode.ONE; // How many properties are bought with each purchase
+    private final TimingWheel timers; // Payout timers tagged with the property's index, then boost timers tagged past them
+    private final long[] payoutTimers; // The handle of each property's next payout, NONE until one is owned
+    private final long[] periodTicks; // The ticks between each property's payouts
+    private final double[] boosts; // The factor of each running boost, 0 for a free boost slot
+    private final long[] boostTimers; // The handle of each boost's expiry
+    private double multiplier = 1; // The product of every running boost, applied to payouts
+    private long tickRemainder = 0; // Simulated time not yet making up a whole tick, so payouts never drift
+    private boolean paid = false; // Whether or not a payout was made during the current update
+    private final TimingWheel.Listener expiry = new TimingWheel.Listener() {
+        @Override
+        public void onExpired(final int tag)
+        {
+            if(tag < ownedProperties.length)
+                payOut(tag);
+            else
+            if(tag < ownedProperties.length + MAX_BOOSTS)
+                endBoost(tag - ownedProperties.length);
+            else
+                moveMarket();
+        }
+    };
+
+    /**
+     * Constructor for creating an economy with no money or properties, using the catalog shipped with the game.
+     */
+    public Economy()
+    {
+        this(BuildingCatalog.getDefault());
+    }
+
+    /**
+     * Constructor for creating an economy with no money or properties, with a market that always moves the same way.
+     * @param catalog The properties that can be bought.
+     */
+    public Economy(final BuildingCatalog catalog)
+    {
+        this(catalog, 0);
+    }
+
+    /**
+     * Constructor for creating an economy with no money or properties.
+     * @param catalog The properties that can be bought.
+     * @param seed The seed of the property market, the same seed and steps always give the same prices and rents.
+     */
+    public Economy(final BuildingCatalog catalog, final long seed)
+    {
+        this.catalog = catalog;
+        market = new PropertyMarket(catalog.getCount(), seed);
+        ownedProperties = new int[catalog.getCount()];
+        prices = new Money[catalog.getCount()];
+        quantities = new int[catalog.getCount()];
+        priceVersions = new long[catalog.getCount()];
+        rentWeights = new double[catalog.getCount()];
+        timers = new TimingWheel(catalog.getCount() + MAX_BOOSTS + 1);
+        timers.schedule(MARKET_PERIOD, catalog.getCount() + MAX_BOOSTS);
+        payoutTimers = new long[catalog.getCount()];
+        periodTicks = new long[catalog.getCount()];
+        boosts = new double[MAX_BOOSTS];
+        boostTimers = new long[MAX_BOOSTS];
+        Arrays.fill(payoutTimers, TimingWheel.NONE);
+        Arrays.fill(boostTimers, TimingWheel.NONE);
+        for (int index = 0; index < prices.length; index++)
+        {
+            prices[index] = new Money();
+            periodTicks[index] = Math.max(1, Math.round(catalog.getPeriod(index) * 1e9 / TICK_LENGTH));
+        }
+        updatePrices();
+    }
+
+    /**
+     * Advances the economy by a fixed step, paying out every property whose period ends within it
+     * and ending any boosts that run out. Only whole ticks are advanced, the rest is carried over to the next step.
+     * @param step The length of the step in nanoseconds.
+     * @return true if the player was paid.
+     */
+    public boolean update(final long step)
+    {
+        tickRemainder += step;
+        final long ticks = tickRemainder / TICK_LENGTH;
+        tickRemainder -= ticks * TICK_LENGTH;
+        paid = false;
+        timers.advance(ticks, expiry);
+        return paid;
+    }
+
+    /**
+     * Pays the player for a period of a property and schedules its next payout.
+     * @param index The index of the property.
+     */
+    private void payOut(final int index)
+    {
+        payoutTimers[index] = timers.schedule(periodTicks[index], index);
+        pay(index, periodTicks[index]);
+    }
+
+    /**
+     * Pays the player for the part of a property's period that has passed so far and starts a new period,
+     * so that properties bought part way through a period only earn from when they were bought.
+     * @param index The index of the property.
+     */
+    private void payOutEarly(final int index)
+    {
+        if(payoutTimers[index] == TimingWheel.NONE)
+            return;
+        final long elapsed = periodTicks[index] - timers.getRemaining(payoutTimers[index]);
+        if(elapsed <= 0)
+            return;
+        timers.cancel(payoutTimers[index]);
+        payoutTimers[index] = timers.schedule(periodTicks[index], index);
+        pay(index, elapsed);
+    }
+
+    /**
+     * Pays the player for the properties of one type they own over a number of ticks, at the current rent and boosts.
+     * @param index The index of the property.
+     * @param ticks The number of ticks being paid for, a whole period or less.
+     */
+    private void pay(final int index, final long ticks)
+    {
+        final double payout = (double) ownedProperties[index] * catalog.getIncome(index) * catalog.getPeriod(index) *
+                market.getRentFactor(index) * multiplier * ticks / periodTicks[index];
+        if(payout > 0)
+        {
+            money.add(payout);
+            paid = true;
+        }
+    }
+
+    /**
+     * Moves the property market on, adjusting the income by the change in rents.
+     * Prices are only marked as out of date, so a market of thousands of properties only reprices the ones that are read.
+     */
+    private void moveMarket()
+    {
+        timers.schedule(MARKET_PERIOD, ownedProperties.length + MAX_BOOSTS);
+        baseIncome += market.tick(rentWeights);
+        updatePrices();
+        applyBoosts();
+    }
+
+    /**
+     * Applies the market to a price worked out from the catalog, rounding early game prices up to whole amounts.
+     * @param index The index of the property.
+     * @param price The price, which is changed in place.
+     * @return The price passed in, for chaining.
+     */
+    private Money applyMarket(final int index, final Money price)
+    {
+        price.multiply(market.getPriceFactor(index));
+        if(price.getExponent() == 0)
+            price.set(Math.ceil(price.getMantissa()));
+        return price;
+    }
+
+    /**
+     * Gets the most of a property the player can afford at its market price.
+     * @param index The index of the property.
+     * @return The number that can be afforded.
+     */
+    private int getMaxAffordable(final int index)
+    {
+        marketFunds.set(money).multiply(1 / market.getPriceFactor(index));
+        int affordable = catalog.getMaxAffordable(index, ownedProperties[index], marketFunds, scratch);
+        // The market price is rounded up, so the last one may be just out of reach
+        while (affordable > 0 && !money.isAtLeast(applyMarket(index, catalog.getTotalCost(index, ownedProperties[index], affordable, scratch))))
+            affordable--;
+        return affordable;
+    }
+
+    /**
+     * Starts paying out a property, if it isn't already being paid out.
+     * @param index The index of the property.
+     * @param delay The ticks until the first payout, clamped to a whole period.
+     */
+    private void startPayouts(final int index, final long delay)
+    {
+        if(payoutTimers[index] == TimingWheel.NONE && ownedProperties[index] > 0)
+            payoutTimers[index] = timers.schedule(Math.min(delay, periodTicks[index]), index);
+    }
+
+    /**
+     * Multiplies every payout for a time, such as during a timed event.
+     * Boosts stack by multiplying together, and their time only passes while the economy is updated.
+     * @param factor The amount to multiply payouts by.
+     * @param duration How long the boost lasts in nanoseconds.
+     * @return true if the boost started, false if the most boosts are already running.
+     */
+    public boolean addBoost(final double factor, final long duration)
+    {
+        if(!(factor > 0))
+            throw new IllegalArgumentException("A boost must have a positive factor");
+        for (int slot = 0; slot < boosts.length; slot++)
+        {
+            if(boosts[slot] == 0)
+            {
+                boosts[slot] = factor;
+                boostTimers[slot] = timers.schedule((duration + TICK_LENGTH - 1) / TICK_LENGTH, ownedProperties.length + slot);
+                updateMultiplier();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Ends every running boost.
+     */
+    public void clearBoosts()
+    {
+        for (int slot = 0; slot < boosts.length; slot++)
+        {
+            if(boosts[slot] != 0)
+            {
+                timers.cancel(boostTimers[slot]);
+                endBoost(slot);
+            }
+        }
+    }
+
+    /**
+     * Frees a boost slot once its boost has ended.
+     * @param slot The boost's slot.
+     */
+    private void endBoost(final int slot)
+    {
+        boosts[slot] = 0;
+        boostTimers[slot] = TimingWheel.NONE;
+        updateMultiplier();
+    }
+
+    /**
+     * Works out the product of every running boost.
+     */
+    private void updateMultiplier()
+    {
+        double product = 1;
+        for (int slot = 0; slot < boosts.length; slot++)
+        {
+            if(boosts[slot] != 0)
+                product *= boosts[slot];
+        }
+        multiplier = product;
+        applyBoosts();
+    }
+
+    /**
+     * Gets the product of every running boost.
+     * @return The amount payouts are multiplied by, 1 when no boosts are running.
+     */
+    public double getMultiplier()
+    {
+        return multiplier;
+    }
+
+    /**
+     * Gives the player money, such as for pressing the coin.
+     * @param amount The amount to give.
+     */
+    public void earn(final double amount)
+    {
+        money.add(amount);
+    }
+
+    /**
+     * Gives the player money, such as for time spent away from the game.
+     * @param amount The amount to give.
+     */
+    public void earn(final Money amount)
+    {
+        money.add(amount);
+    }
+
+    /**
+     * Buys the current quantity of a property if the player can afford it.
+     * In max mode as many as can be afforded are bought.
+     * @param index The index of the property.
+     * @return true if anything was bought.
+     */
+    public boolean purchase(final int index)
+    {
+        final int owned = ownedProperties[index];
+        final int quantity = buyMode == BuyMode.MAX ?
+                getMaxAffordable(index) :
+                Math.min(buyMode.getQuantity(), Integer.MAX_VALUE - owned);
+        if(quantity < 1 || !money.isAtLeast(applyMarket(index, catalog.getTotalCost(index, owned, quantity, scratch))))
+            return false;
+        money.subtract(scratch);
+        payOutEarly(index);
+        ownedProperties[index] += quantity;
+        final double added = (double) quantity * catalog.getIncome(index);
+        rentWeights[index] += added;
+        baseIncome += added * market.getRentFactor(index);
+        applyBoosts();
+        startPayouts(index, periodTicks[index]);
+        updatePrice(index);
+        return true;
+    }
+
+    /**
+     * Changes how many properties are bought with each purchase.
+     * @param buyMode The new buy mode.
+     */
+    public void setBuyMode(final BuyMode buyMode)
+    {
+        this.buyMode = buyMode;
+        updatePrices();
+    }
+
+    public BuyMode getBuyMode()
+    {
+        return buyMode;
+    }
+
+    /**
+     * Marks the price of buying the current quantity of every property as out of date,
+     * each is worked out again the next time it's read.
+     */
+    public void updatePrices()
+    {
+        priceVersion++;
+    }
+
+    /**
+     * Works out the price of a property again if it's out of date.
+     * @param index The index of the property.
+     */
+    private void refreshPrice(final int index)
+    {
+        if(priceVersions[index] != priceVersion)
+            updatePrice(index);
+    }
+
+    /**
+     * Works out the price of buying the current quantity of a property, so that it only has to be
+     * worked out again when the amount owned, the buy mode or in max mode the players money changes.
+     * When none can be afforded in max mode, the price of a single property is used.
+     * @param index The index of the property.
+     * @return true if the quantity bought by a purchase changed.
+     */
+    public boolean updatePrice(final int index)
+    {
+        final int owned = ownedProperties[index];
+        final int quantity = Math.max(1, buyMode == BuyMode.MAX ?
+                getMaxAffordable(index) :
+                Math.min(buyMode.getQuantity(), Integer.MAX_VALUE - owned));
+        applyMarket(index, catalog.getTotalCost(index, owned, quantity, prices[index]));
+        priceVersions[index] = priceVersion;
+        final boolean changed = quantity != quantities[index];
+        quantities[index] = quantity;
+        return changed;
+    }
+
+    /**
+     * Whether or not the player can afford the current quantity of a property.
+     * @param index The index of the property.
+     * @return true if the player has enough money.
+     */
+    public boolean canAfford(final int index)
+    {
+        refreshPrice(index);
+        return money.isAtLeast(prices[index]);
+    }
+
+    /**
+     * Replaces the state of the economy, such as when loading a save.
+     * Each property owned starts paying out one period later, and any running boosts are ended.
+     * @param mantissa The mantissa of the players money.
+     * @param exponent The exponent of the players money.
+     * @param owned The amount of each property the player owns.
+     */
+    public void restore(final double mantissa, final int exponent, final int[] owned)
+    {
+        restore(mantissa, exponent, owned, null);
+    }
+
+    /**
+     * Replaces the state of the economy, such as when loading a save.
+     * Each property owned carries on with the time that was left of its period, and any running boosts are ended.
+     * @param mantissa The mantissa of the players money.
+     * @param exponent The exponent of the players money.
+     * @param owned The amount of each property the player owns.
+     * @param remaining The time left until each property next pays out in milliseconds, from {@link #getPayoutRemaining(int)}.
+     *                  A time of 0 or more than a period, or a null array, starts a whole period.
+     */
+    public void restore(final double mantissa, final int exponent, final int[] owned, final int[] remaining)
+    {
+        money.set(mantissa, exponent);
+        System.arraycopy(owned, 0, ownedProperties, 0, Math.min(owned.length, ownedProperties.length));
+        clearBoosts();
+        for (int index = 0; index < ownedProperties.length; index++)
+        {
+            timers.cancel(payoutTimers[index]);
+            payoutTimers[index] = TimingWheel.NONE;
+            final long left = remaining == null || index >= remaining.length ? 0 :
+                    (remaining[index] * NANOS_PER_MILLI + TICK_LENGTH - 1) / TICK_LENGTH;
+            startPayouts(index, left > 0 ? left : periodTicks[index]);
+        }
+        updateIncome();
+        updatePrices();
+    }
+
+    /**
+     * Replaces the state of the economy with a save, carrying on the property market where it was if it was saved.
+     * Saves from before the market was saved keep this economy's market.
+     * @param state The save, whose catalog must be the economy's.
+     */
+    public void restore(final SaveState state)
+    {
+        if(state.hasMarket())
+            market.restore(state.getMarketSeed(), state.getMarketTicks(), state.getMarketStates(), state.getMarketDemands());
+        restore(state.getMoneyMantissa(), state.getMoneyExponent(), state.getOwnedProperties(), state.getPayoutRemaining());
+    }
+
+    /**
+     * Copies everything about the economy that is saved into a snapshot, other than when it was saved.
+     * @param out The snapshot to fill in, whose catalog must be the economy's.
+     */
+    public void save(final SaveState out)
+    {
+        out.setMoney(money.getMantissa(), money.getExponent());
+        System.arraycopy(ownedProperties, 0, out.getOwnedProperties(), 0, ownedProperties.length);
+        final int[] remaining = out.getPayoutRemaining();
+        final long[] states = out.getMarketStates();
+        final double[] demands = out.getMarketDemands();
+        for (int index = 0; index < ownedProperties.length; index++)
+        {
+            remaining[index] = getPayoutRemaining(index);
+            states[index] = market.getState(index);
+            demands[index] = market.getDemand(index);
+        }
+        out.setMarket(market.getSeed(), market.getTicks());
+    }
+
+    /**
+     * Gets the time left until a property next pays out, so it can be saved and restored.
+     * @param index The index of the property.
+     * @return The time left in milliseconds, 0 if none are owned.
+     */
+    public int getPayoutRemaining(final int index)
+    {
+        final long ticks = timers.getRemaining(payoutTimers[index]);
+        return ticks <= 0 ? 0 : (int) (ticks * TICK_LENGTH / NANOS_PER_MILLI);
+    }
+
+    /**
+     * Works out the running total of income per second from scratch, such as after loading.
+     * Afterwards it's adjusted as properties are bought and rents move.
+     */
+    private void updateIncome()
+    {
+        double earnings = 0;
+        for (int index = 0; index < ownedProperties.length; index++)
+        {
+            rentWeights[index] = (double) ownedProperties[index] * catalog.getIncome(index);
+            earnings += rentWeights[index] * market.getRentFactor(index);
+        }
+        baseIncome = earnings;
+        applyBoosts();
+    }
+
+    /**
+     * Applies the running boosts to the running total of income, so that it matches what the properties are paying out.
+     */
+    private void applyBoosts()
+    {
+        income.set(baseIncome * multiplier);
+    }
+
+    /**
+     * Gets the players money.
+     * @return The players money, this is the live value so it shouldn't be modified.
+     */
+    public Money getMoney()
+    {
+        return money;
+    }
+
+    /**
+     * Returns the total amount of income per second the users properties generate at the current rents and boosts.
+     * @return the amount per second all properties will generate, this is the live value so it shouldn't be modified.
+     */
+    public Money getIncomePerSecond()
+    {
+        return income;
+    }
+
+    /**
+     * Gets the price of buying the current quantity of a property.
+     * @param index The index of the property.
+     * @return The price, this is the live value so it shouldn't be modified.
+     */
+    public Money getPrice(final int index)
+    {
+        refreshPrice(index);
+        return prices[index];
+    }
+
+    /**
+     * Gets the number of a property that the next purchase will buy.
+     * @param index The index of the property.
+     * @return The quantity, at least one.
+     */
+    public int getQuantity(final int index)
+    {
+        refreshPrice(index);
+        return quantities[index];
+    }
+
+    /**
+     * Gets the amount of a property the player owns.
+     * @param index The index of the property.
+     * @return The amount owned.
+     */
+    public int getOwned(final int index)
+    {
+        return ownedProperties[index];
+    }
+
+    /**
+     * Gets the amount of each property the player owns.
+     * @return The amounts owned, this is the live array so it shouldn't be modified.
+     */
+    public int[] getOwnedProperties()
+    {
+        return ownedProperties;
+    }
+
+    /**
+     * Gets the number of properties that can be bought.
+     * @return The number of properties.
+     */
+    public int getBuildingCount()
+    {
+        return ownedProperties.length;
+    }
+
+    /**
+     * Gets the property market, whose tick count changes every time prices and rents move.
+     * @return The market, which shouldn't be moved on except by the economy.
+     */
+    public PropertyMarket getMarket()
+    {
+        return market;
+    }
+
+    /**
+     * Gets the properties that can be bought.
+     * @return The catalog of properties.
+     */
+    public BuildingCatalog getCatalog()
+    {
+        return catalog;
+    }
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+}
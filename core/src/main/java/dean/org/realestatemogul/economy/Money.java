@@ -0,0 +1,350 @@
+package dean.org.realestatemogul.economy;
+
+/**
+ * An amount of money stored as a mantissa and a power of ten, so that it can grow far beyond
+ * the range of a long without overflowing.
+ * Amounts below one quadrillion are held with an exponent of zero, which keeps whole amounts
+ * exact for the early game, larger amounts keep fifteen significant digits.
+ * Instances are mutable and every operation works in place, so the game loop can do all
+ * of its arithmetic without allocating.
+ */
+public final class Money implements Comparable<Money> {
+
+    /**
+     * The mantissa is kept below this, amounts that reach it are scaled down and the exponent raised.
+     */
+    private static final double LIMIT = 1e15;
+
+    /**
+     * When the exponent is raised the mantissa is kept at or above this.
+     */
+    private static final double LOWER_LIMIT = 1e14;
+
+    /**
+     * The number of digits held in the mantissa.
+     */
+    private static final int DIGITS = 15;
+
+    /**
+     * Powers of ten that can be represented by a double, looked up rather than calculated.
+     */
+    private static final double[] POWERS = new double[309];
+
+    static
+    {
+        POWERS[0] = 1;
+        for (int power = 1; power < POWERS.length; power++)
+            POWERS[power] = Double.parseDouble("1e" + power);
+    }
+
+    private double mantissa = 0; // The significant digits of the amount
+    private int exponent = 0; // The power of ten the mantissa is multiplied by, never negative
+
+    /**
+     * Constructor for creating an amount of zero.
+     */
+    public Money()
+    {
+    }
+
+    /**
+     * Constructor for creating an amount from a double.
+     * @param value The amount.
+     */
+    public Money(final double value)
+    {
+        set(value);
+    }
+
+    /**
+     * Sets this amount from a double.
+     * @param value The amount.
+     * @return This instance, for chaining.
+     */
+    public Money set(final double value)
+    {
+        mantissa = value;
+        exponent = 0;
+        normalise();
+        return this;
+    }
+
+    /**
+     * Sets this amount to be the same as another.
+     * @param other The amount to copy.
+     * @return This instance, for chaining.
+     */
+    public Money set(final Money other)
+    {
+        mantissa = other.mantissa;
+        exponent = other.exponent;
+        return this;
+    }
+
+    /**
+     * Sets this amount from a mantissa and power of ten, such as those returned
+     * by {@link #getMantissa()} and {@link #getExponent()}.
+     * @param mantissa The significant digits of the amount.
+     * @param exponent The power of ten the mantissa is multiplied by.
+     * @return This instance, for chaining.
+     */
+    public Money set(final double mantissa, final int exponent)
+    {
+        this.mantissa = exponent < 0 ? mantissa / POWERS[Math.min(-exponent, POWERS.length - 1)] : mantissa;
+        this.exponent = Math.max(0, exponent);
+        normalise();
+        return this;
+    }
+
+    /**
+     * Sets this amount to ten raised to the given power, used for amounts that grow exponentially.
+     * @param log10 The base ten logarithm of the amount.
+     * @return This instance, for chaining.
+     */
+    public Money setLog10(final double log10)
+    {
+        if(log10 < DIGITS)
+            return set(Math.pow(10, log10));
+        final int shift = (int) Math.floor(log10) - (DIGITS - 1);
+        mantissa = Math.pow(10, log10 - shift);
+        exponent = shift;
+        normalise();
+        return this;
+    }
+
+    /**
+     * Adds another amount to this one.
+     * @param other The amount to add.
+     * @return This instance, for chaining.
+     */
+    public Money add(final Money other)
+    {
+        return add(other.mantissa, other.exponent);
+    }
+
+    /**
+     * Adds a double to this amount.
+     * @param value The amount to add.
+     * @return This instance, for chaining.
+     */
+    public Money add(final double value)
+    {
+        return add(value, 0);
+    }
+
+    /**
+     * Subtracts another amount from this one.
+     * @param other The amount to subtract.
+     * @return This instance, for chaining.
+     */
+    public Money subtract(final Money other)
+    {
+        return add(-other.mantissa, other.exponent);
+    }
+
+    /**
+     * Multiplies this amount by a double.
+     * @param factor The amount to multiply by.
+     * @return This instance, for chaining.
+     */
+    public Money multiply(final double factor)
+    {
+        mantissa *= factor;
+        normalise();
+        return this;
+    }
+
+    /**
+     * Multiplies this amount by another.
+     * @param other The amount to multiply by.
+     * @return This instance, for chaining.
+     */
+    public Money multiply(final Money other)
+    {
+        mantissa *= other.mantissa;
+        exponent += other.exponent;
+        normalise();
+        return this;
+    }
+
+    /**
+     * Compares this amount to another.
+     * @param other The amount to compare against.
+     * @return A negative number, zero or a positive number as this amount is less than, equal to or greater than the other.
+     */
+    @Override
+    public int compareTo(final Money other)
+    {
+        final int sign = signum();
+        final int otherSign = other.signum();
+        if(sign != otherSign)
+            return sign < otherSign ? -1 : 1;
+        if(exponent != other.exponent)
+            return (exponent < other.exponent ? -1 : 1) * sign;
+        return Double.compare(mantissa, other.mantissa);
+    }
+
+    /**
+     * Whether or not this amount is at least as large as another, such as when checking if something can be afforded.
+     * @param other The amount to compare against.
+     * @return true if this amount is greater than or equal to the other.
+     */
+    public boolean isAtLeast(final Money other)
+    {
+        return compareTo(other) >= 0;
+    }
+
+    /**
+     * Whether or not this amount is zero.
+     * @return true if this amount is zero.
+     */
+    public boolean isZero()
+    {
+        return mantissa == 0;
+    }
+
+    /**
+     * Gets the sign of this amount.
+     * @return -1, 0 or 1 as this amount is negative, zero or positive.
+     */
+    public int signum()
+    {
+        return mantissa > 0 ? 1 : (mantissa < 0 ? -1 : 0);
+    }
+
+    /**
+     * Gets the significant digits of this amount.
+     * @return The mantissa, which is a whole number of up to fifteen digits for whole amounts.
+     */
+    public double getMantissa()
+    {
+        return mantissa;
+    }
+
+    /**
+     * Gets the power of ten the mantissa is multiplied by.
+     * @return The exponent, which is zero for amounts below one quadrillion.
+     */
+    public int getExponent()
+    {
+        return exponent;
+    }
+
+    /**
+     * Converts this amount to a double.
+     * @return The amount, or infinity if it is too large for a double.
+     */
+    public double toDouble()
+    {
+        if(exponent >= POWERS.length)
+            return mantissa * Double.POSITIVE_INFINITY;
+        return mantissa * POWERS[exponent];
+    }
+
+    /**
+     * Converts this amount to a long, rounding towards zero and saturating at the range of a long.
+     * @return The amount as a long.
+     */
+    public long toLong()
+    {
+        return (long) toDouble();
+    }
+
+    /**
+     * Gets the base ten logarithm of the size of this amount.
+     * @return The logarithm, or negative infinity for zero.
+     */
+    public double log10()
+    {
+        return exponent + Math.log10(Math.abs(mantissa));
+    }
+
+    /**
+     * Adds a mantissa and exponent pair to this amount, lining the smaller amount up with the larger.
+     * @param otherMantissa The mantissa of the amount to add.
+     * @param otherExponent The exponent of the amount to add.
+     * @return This instance, for chaining.
+     */
+    private Money add(final double otherMantissa, final int otherExponent)
+    {
+        if(otherMantissa == 0)
+            return this;
+        if(mantissa == 0)
+        {
+            mantissa = otherMantissa;
+            exponent = otherExponent;
+            normalise(); // A double added to zero can be past the limit
+            return this;
+        }
+        final int difference = exponent - otherExponent;
+        if(difference >= 0)
+        {
+            if(difference <= DIGITS + 2)
+                mantissa += otherMantissa / POWERS[difference];
+        }
+        else
+        {
+            if(-difference <= DIGITS + 2)
+                mantissa = mantissa / POWERS[-difference] + otherMantissa;
+            else
+                mantissa = otherMantissa;
+            exponent = otherExponent;
+        }
+        normalise();
+        return this;
+    }
+
+    /**
+     * Keeps the mantissa below {@link #LIMIT}, and at or above {@link #LOWER_LIMIT} whenever the exponent is above zero.
+     * Most operations only move the mantissa within this range, so the logarithm is rarely needed.
+     */
+    private void normalise()
+    {
+        final double size = Math.abs(mantissa);
+        if(size == 0 || Double.isNaN(size) || Double.isInfinite(size))
+        {
+            if(size == 0)
+                exponent = 0;
+            return;
+        }
+        if(size >= LIMIT)
+        {
+            final int shift = (int) Math.floor(Math.log10(size)) - (DIGITS - 1);
+            mantissa /= POWERS[Math.min(shift, POWERS.length - 1)];
+            exponent += shift;
+            if(Math.abs(mantissa) >= LIMIT)
+            {
+                mantissa /= 10;
+                exponent++;
+            }
+        }
+        else if(exponent > 0 && size < LOWER_LIMIT)
+        {
+            final int shift = Math.min(exponent, (DIGITS - 1) - (int) Math.floor(Math.log10(size)));
+            mantissa *= POWERS[Math.min(shift, POWERS.length - 1)];
+            exponent -= shift;
+        }
+    }
+
+    @Override
+    public boolean equals(final Object other)
+    {
+        if(!(other instanceof Money))
+            return false;
+        return mantissa == ((Money) other).mantissa && exponent == ((Money) other).exponent;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        final long bits = Double.doubleToLongBits(mantissa);
+        return (int) (bits ^ (bits >>> 32)) * 31 + exponent;
+    }
+
+    @Override
+    public String toString()
+    {
+        return exponent == 0 ? Double.toString(mantissa) : mantissa + "e" + exponent;
+    }
+
+}
@@ -0,0 +1,80 @@
+package dean.org.realestatemogul.economy;
+
+/**
+ * Works out what the players properties earned while the game wasn't running.
+ * Earnings are calculated in one step from the income per second and the time away,
+ * so loading takes the same time however long the player was gone.
+ */
+public class OfflineProgress {
+
+    /**
+     * The default limit on how much time away is paid for, one day.
+     */
+    public static final long DEFAULT_CAP = 24L * 60 * 60 * 1000;
+
+    /**
+     * How far apart two readings of the boot time can be while still being treated as the same boot.
+     */
+    private static final long BOOT_TOLERANCE = 60 * 1000;
+
+    private long cap; // The most time away in milliseconds that is paid for
+
+    /**
+     * Constructor for creating the offline progress calculator.
+     * @param cap The most time away in milliseconds that is paid for.
+     */
+    public OfflineProgress(final long cap)
+    {
+        setCap(cap);
+    }
+
+    /**
+     * Works out how long the player was away.
+     * If the device hasn't restarted since the save, the time since boot is used as it can't be changed
+     * by the user, otherwise the wall clock is used and time going backwards is treated as no time away.
+     * @param savedAt The wall clock time of the save in milliseconds.
+     * @param savedRealtime The time since boot of the save in milliseconds.
+     * @param now The current wall clock time in milliseconds.
+     * @param realtime The current time since boot in milliseconds.
+     * @return The time away in milliseconds.
+     */
+    public long getElapsed(final long savedAt, final long savedRealtime, final long now, final long realtime)
+    {
+        if(savedAt <= 0)
+            return 0;
+        final long savedBoot = savedAt - savedRealtime;
+        final long boot = now - realtime;
+        if(realtime >= savedRealtime && Math.abs(boot - savedBoot) <= BOOT_TOLERANCE)
+            return realtime - savedRealtime;
+        return Math.max(0, now - savedAt);
+    }
+
+    /**
+     * Works out what was earned while the player was away, up to the cap.
+     * @param incomePerSecond The amount all properties generate per second.
+     * @param elapsed The time away in milliseconds.
+     * @param out The amount to store the earnings in.
+     * @return The amount passed in, for chaining.
+     */
+    public Money getEarnings(final Money incomePerSecond, final long elapsed, final Money out)
+    {
+        return out.set(incomePerSecond).multiply(Math.min(Math.max(0, elapsed), cap) / 1000.0);
+    }
+
+    public long getCap()
+    {
+        return cap;
+    }
+
+    /**
+     * Sets the limit on how much time away is paid for.
+     * @param cap The most time away in milliseconds that is paid for.
+     */
+    public void setCap(final long cap)
+    {
+        if(cap < 0)
+            throw new IllegalArgumentException("The offline progress cap cannot be negative");
+        this.cap = cap;
+    }
+
+}
@@ -0,0 +1,237 @@
+package dean.org.realestatemogul.economy;
+
+/**
+ * A seeded random market that makes the price and rent of each kind of property drift over time.
+ * Each entry of the market, such as a property type or later a property type in a district, has a demand
+ * that is pulled back towards zero each tick and knocked about by noise. Prices and rents are scaled by the demand.
+ *
+ * The state is kept in parallel primitive arrays, each entry with its own random number generator, and a tick
+ * is a few straight loops over the arrays with no branches or calls, so it can be vectorised and thousands of
+ * entries update in microseconds. The same seed and number of ticks always gives the same market.
+ * The generators and demands can be saved and restored, so the market carries on across restarts rather than starting again.
+ */
+public class PropertyMarket {
+
+    /**
+     * The default share of demand kept each tick, the rest decays back to no demand
+     */
+    public static final double DEFAULT_RETENTION = 0.95;
+
+    /**
+     * The default most that demand changes by at random each tick
+     */
+    public static final double DEFAULT_VOLATILITY = 0.05;
+
+    private static final double DEMAND_LIMIT = 0.5; // The furthest demand can move either way
+    private static final double PRICE_SENSITIVITY = 0.3; // How much prices follow demand, up to 15% either way
+    private static final double RENT_SENSITIVITY = 0.2; // How much rents follow demand, up to 10% either way
+    private static final long MULTIPLIER = 6364136223846793005L; // Knuth's 64 bit linear congruential generator
+    private static final long INCREMENT = 1442695040888963407L;
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L; // Spreads the entries' seeds apart
+    private static final double NOISE_SCALE = 1.0 / (1L << 52); // Maps the top 53 bits of a generator to -1 to 1
+
+    private final long[] states; // The random number generator of each entry
+    private final double[] demands; // How far each entry's demand is above or below normal
+    private final double[] priceFactors; // The amount each entry's prices are multiplied by
+    private final double[] rentFactors; // The amount each entry's rents are multiplied by
+    private final double retention; // The share of demand kept each tick
+    private final double volatility; // The most that demand changes by at random each tick
+    private long seed; // The seed the market's randomness came from
+    private long ticks = 0; // The number of ticks the market has run for
+
+    /**
+     * Constructor for a market with the default behaviour, every entry starts at normal demand.
+     * @param entries The number of entries.
+     * @param seed The seed the market's randomness comes from.
+     */
+    public PropertyMarket(final int entries, final long seed)
+    {
+        this(entries, seed, DEFAULT_RETENTION, DEFAULT_VOLATILITY);
+    }
+
+    /**
+     * Constructor for a market, every entry starts at normal demand.
+     * @param entries The number of entries.
+     * @param seed The seed the market's randomness comes from.
+     * @param retention The share of demand kept each tick, from 0 to 1.
+     * @param volatility The most that demand changes by at random each tick.
+     */
+    public PropertyMarket(final int entries, final long seed, final double retention, final double volatility)
+    {
+        if(!(retention >= 0 && retention <= 1) || !(volatility >= 0))
+            throw new IllegalArgumentException("Retention must be from 0 to 1 and volatility can't be negative");
+        this.retention = retention;
+        this.volatility = volatility;
+        this.seed = seed;
+        states = new long[entries];
+        demands = new double[entries];
+        priceFactors = new double[entries];
+        rentFactors = new double[entries];
+        for (int index = 0; index < entries; index++)
+        {
+            states[index] = mix(seed + (index * GOLDEN_GAMMA));
+            priceFactors[index] = 1;
+            rentFactors[index] = 1;
+        }
+    }
+
+    /**
+     * Scrambles a seed so that neighbouring entries' generators don't start out alike.
+     * @param seed The seed.
+     * @return The scrambled seed.
+     */
+    private static long mix(final long seed)
+    {
+        long value = seed;
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+
+    /**
+     * Moves the market on by one tick.
+     */
+    public void tick()
+    {
+        moveDemand();
+        final double[] demands = this.demands;
+        final int count = demands.length;
+        for (int index = 0; index < count; index++)
+        {
+            priceFactors[index] = 1 + demands[index] * PRICE_SENSITIVITY;
+            rentFactors[index] = 1 + demands[index] * RENT_SENSITIVITY;
+        }
+        ticks++;
+    }
+
+    /**
+     * Moves the market on by one tick, working out how much a weighted total of rents changed in the same pass,
+     * so that a running total of rent can be kept without going over the entries again.
+     * @param weights The weight of each entry's rent, such as the income of the properties owned of it.
+     * @return The change in the sum of each entry's weight times its rent factor.
+     */
+    public double tick(final double[] weights)
+    {
+        moveDemand();
+        final double[] demands = this.demands;
+        final int count = demands.length;
+        double change = 0;
+        for (int index = 0; index < count; index++)
+        {
+            priceFactors[index] = 1 + demands[index] * PRICE_SENSITIVITY;
+            final double rent = 1 + demands[index] * RENT_SENSITIVITY;
+            change += weights[index] * (rent - rentFactors[index]);
+            rentFactors[index] = rent;
+        }
+        ticks++;
+        return change;
+    }
+
+    /**
+     * Steps every entry's generator and moves its demand by the noise.
+     */
+    private void moveDemand()
+    {
+        final long[] states = this.states;
+        final double[] demands = this.demands;
+        final int count = states.length;
+        for (int index = 0; index < count; index++)
+        {
+            final long state = states[index] * MULTIPLIER + INCREMENT;
+            states[index] = state;
+            final double noise = (state >> 11) * NOISE_SCALE;
+            final double demand = demands[index] * retention + noise * volatility;
+            demands[index] = Math.max(-DEMAND_LIMIT, Math.min(DEMAND_LIMIT, demand));
+        }
+    }
+
+    /**
+     * Gets the amount an entry's prices are multiplied by.
+     * @param index The index of the entry.
+     * @return The price factor, 1 at normal demand.
+     */
+    public double getPriceFactor(final int index)
+    {
+        return priceFactors[index];
+    }
+
+    /**
+     * Gets the amount an entry's rents are multiplied by.
+     * @param index The index of the entry.
+     * @return The rent factor, 1 at normal demand.
+     */
+    public double getRentFactor(final int index)
+    {
+        return rentFactors[index];
+    }
+
+    /**
+     * Gets how far an entry's demand is above or below normal.
+     * @param index The index of the entry.
+     * @return The demand, 0 when normal.
+     */
+    public double getDemand(final int index)
+    {
+        return demands[index];
+    }
+
+    /**
+     * Gets the state of an entry's random number generator, so it can be saved.
+     * @param index The index of the entry.
+     * @return The generator's state.
+     */
+    public long getState(final int index)
+    {
+        return states[index];
+    }
+
+    /**
+     * Gets the seed the market's randomness came from.
+     * @return The seed.
+     */
+    public long getSeed()
+    {
+        return seed;
+    }
+
+    /**
+     * Replaces the market with one that was saved, so that prices and rents carry on from where they were.
+     * Entries that weren't saved, such as properties added since, start again from the seed at normal demand.
+     * @param seed The seed of the saved market.
+     * @param ticks The number of ticks the saved market had run for.
+     * @param states The state of each entry's generator.
+     * @param demands The demand of each entry, NaN for an entry that wasn't saved.
+     */
+    public void restore(final long seed, final long ticks, final long[] states, final double[] demands)
+    {
+        this.seed = seed;
+        this.ticks = ticks;
+        for (int index = 0; index < this.states.length; index++)
+        {
+            final boolean saved = index < states.length && index < demands.length && !Double.isNaN(demands[index]);
+            this.states[index] = saved ? states[index] : mix(seed + (index * GOLDEN_GAMMA));
+            this.demands[index] = saved ? Math.max(-DEMAND_LIMIT, Math.min(DEMAND_LIMIT, demands[index])) : 0;
+            priceFactors[index] = 1 + this.demands[index] * PRICE_SENSITIVITY;
+            rentFactors[index] = 1 + this.demands[index] * RENT_SENSITIVITY;
+        }
+    }
+
+    /**
+     * Gets the number of entries in the market.
+     * @return The number of entries.
+     */
+    public int getSize()
+    {
+        return states.length;
+    }
+
+    /**
+     * Gets the number of ticks the market has run for, which changes every time prices do.
+     * @return The number of ticks.
+     */
+    public long getTicks()
+    {
+        return ticks;
+    }
+
+}
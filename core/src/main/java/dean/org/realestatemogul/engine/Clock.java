@@ -0,0 +1,25 @@
+package dean.org.realestatemogul.engine;
+
+/**
+ * A source of monotonic time, so that the game loop can be driven by a virtual clock when it isn't running on a device.
+ */
+public interface Clock {
+
+    /**
+     * The system's monotonic clock.
+     */
+    Clock SYSTEM = new Clock() {
+        @Override
+        public long nanoTime()
+        {
+            return System.nanoTime();
+        }
+    };
+
+    /**
+     * Gets the current time, which only has meaning when compared with other readings from the same clock.
+     * @return The current time in nanoseconds.
+     */
+    long nanoTime();
+
+}
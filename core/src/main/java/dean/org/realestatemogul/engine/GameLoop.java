@@ -0,0 +1,289 @@
+package dean.org.realestatemogul.engine;
+
+/**
+ * Game loop that advances the simulation in fixed steps and renders as close to a target frame rate as it can.
+ * Time is measured with a monotonic clock and added to an accumulator which is spent in whole steps, so the
+ * simulation runs at the same rate however long each frame takes, and the time left over is passed to the
+ * renderer so it can interpolate between steps.
+ * While paused the loop's thread waits without using any CPU, and when it's resumed the time spent paused
+ * is skipped rather than simulated.
+ */
+public class GameLoop implements Runnable {
+
+    /**
+     * The callback the loop drives each frame.
+     */
+    public interface Callback {
+
+        /**
+         * Advances the simulation by one fixed step.
+         * @param step The length of the step in nanoseconds.
+         */
+        void update(long step);
+
+        /**
+         * Renders the current state of the game.
+         * @param interpolation How far between the last step and the next the frame is, from 0 to 1.
+         */
+        void render(float interpolation);
+
+    }
+
+    private static final long NANOS_PER_SECOND = 1000000000L;
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    private final Callback callback; // The game being driven by the loop
+    private final Clock clock; // The clock used for measuring time
+    private final long step; // The length of a simulation step in nanoseconds
+
+    private volatile boolean running = true; // Whether or not the loop should keep running
+    private volatile boolean idle = false; // Whether or not the loop should run at the idle frame rate
+    private volatile boolean paused = false; // Whether or not the loop should wait until it's resumed
+    private final Object pauseLock = new Object(); // Guards pausing and parking, and is waited on while parked
+    private boolean parked = false; // Whether or not the loop is waiting while paused, guarded by pauseLock
+    private volatile long framePeriod; // The time between frames at the target frame rate
+    private volatile long idleFramePeriod; // The time between frames at the idle frame rate
+    private int maxCatchUpSteps = 25; // The most steps that can be run in a single frame
+    private long maxBacklog = 5 * NANOS_PER_SECOND; // The most unsimulated time that is kept before it is dropped
+
+    private long accumulator = 0; // Time that has passed but hasn't been simulated yet
+    private long droppedTime = 0; // Total time that was dropped because the loop fell too far behind
+
+    /**
+     * Constructor for creating a game loop.
+     * @param callback The game being driven by the loop.
+     * @param clock The clock used for measuring time.
+     * @param updateRate The number of simulation steps per second.
+     * @param frameRate The number of frames to render per second.
+     */
+    public GameLoop(final Callback callback, final Clock clock, final int updateRate, final int frameRate)
+    {
+        this.callback = callback;
+        this.clock = clock;
+        this.step = NANOS_PER_SECOND / updateRate;
+        setTargetFrameRate(frameRate);
+        setIdleFrameRate(frameRate);
+    }
+
+    /**
+     * Runs the loop until {@link #stop()} is called.
+     */
+    @Override
+    public void run()
+    {
+        long previous = clock.nanoTime();
+        long nextFrame = previous;
+        while (running)
+        {
+            if(paused)
+            {
+                park();
+                previous = clock.nanoTime(); // Don't simulate the time spent paused
+                nextFrame = previous;
+                continue;
+            }
+            final long now = clock.nanoTime();
+            advance(now - previous);
+            previous = now;
+            callback.render((float) accumulator / step);
+
+            nextFrame += idle ? idleFramePeriod : framePeriod;
+            final long sleepTime = nextFrame - clock.nanoTime();
+            if(sleepTime > 0)
+                sleep(sleepTime);
+            else
+                nextFrame = clock.nanoTime(); // Behind schedule, don't try to render the missed frames
+        }
+    }
+
+    /**
+     * Adds elapsed time to the accumulator and runs as many whole steps as it can,
+     * up to the catch-up limit. Time beyond the limit is kept for later frames unless the
+     * backlog grows past its limit, in which case the excess is dropped.
+     * @param elapsed The time since the last frame in nanoseconds.
+     * @return The number of steps that were run.
+     */
+    public int advance(final long elapsed)
+    {
+        accumulator += Math.max(0, elapsed);
+        int steps = 0;
+        while (accumulator >= step && steps < maxCatchUpSteps)
+        {
+            callback.update(step);
+            accumulator -= step;
+            steps++;
+        }
+        if(accumulator > maxBacklog)
+        {
+            droppedTime += accumulator - maxBacklog;
+            accumulator = maxBacklog;
+        }
+        return steps;
+    }
+
+    /**
+     * Waits for the next frame.
+     * @param nanos The time to wait in nanoseconds.
+     */
+    private void sleep(final long nanos)
+    {
+        try {
+            Thread.sleep(nanos / NANOS_PER_MILLI, (int) (nanos % NANOS_PER_MILLI));
+        } catch(final InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    /**
+     * Waits without using any CPU until the loop is resumed or stopped.
+     */
+    private void park()
+    {
+        synchronized (pauseLock)
+        {
+            parked = true;
+            pauseLock.notifyAll();
+            try {
+                while (paused && running)
+                    pauseLock.wait();
+            } catch(final InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } finally {
+                parked = false;
+            }
+        }
+    }
+
+    /**
+     * Pauses or resumes the loop, a paused loop finishes its current frame and then waits until it's resumed.
+     * @param paused true to pause the loop.
+     */
+    public void setPaused(final boolean paused)
+    {
+        synchronized (pauseLock)
+        {
+            this.paused = paused;
+            pauseLock.notifyAll();
+        }
+    }
+
+    public boolean isPaused()
+    {
+        return paused;
+    }
+
+    /**
+     * Waits for a paused loop to finish its current frame, after which the game can safely be used from other threads
+     * until the loop is resumed.
+     * @param timeout The most time to wait in nanoseconds.
+     * @return true if the loop is parked or stopped, false if it's not paused or didn't park in time.
+     */
+    public boolean awaitParked(final long timeout)
+    {
+        final long deadline = System.nanoTime() + timeout;
+        synchronized (pauseLock)
+        {
+            try {
+                while (paused && running && !parked)
+                {
+                    final long remaining = deadline - System.nanoTime();
+                    if(remaining <= 0)
+                        return false;
+                    pauseLock.wait(remaining / NANOS_PER_MILLI, (int) (remaining % NANOS_PER_MILLI));
+                }
+            } catch(final InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            return parked || !running;
+        }
+    }
+
+    /**
+     * Stops the loop after the current frame, or straight away if it's parked.
+     */
+    public void stop()
+    {
+        synchronized (pauseLock)
+        {
+            running = false;
+            pauseLock.notifyAll();
+        }
+    }
+
+    public boolean isRunning()
+    {
+        return running;
+    }
+
+    /**
+     * Sets the number of frames to render per second while the game is active.
+     * @param frameRate The number of frames per second.
+     */
+    public void setTargetFrameRate(final int frameRate)
+    {
+        framePeriod = NANOS_PER_SECOND / frameRate;
+    }
+
+    /**
+     * Sets the number of frames to render per second while the game is idle.
+     * @param frameRate The number of frames per second.
+     */
+    public void setIdleFrameRate(final int frameRate)
+    {
+        idleFramePeriod = NANOS_PER_SECOND / frameRate;
+    }
+
+    /**
+     * Sets whether the loop runs at the idle frame rate, the simulation still runs at the same rate.
+     * @param idle true to run at the idle frame rate.
+     */
+    public void setIdle(final boolean idle)
+    {
+        this.idle = idle;
+    }
+
+    public boolean isIdle()
+    {
+        return idle;
+    }
+
+    /**
+     * Sets the most steps that can be run in a single frame.
+     * @param maxCatchUpSteps The number of steps.
+     */
+    public void setMaxCatchUpSteps(final int maxCatchUpSteps)
+    {
+        this.maxCatchUpSteps = maxCatchUpSteps;
+    }
+
+    /**
+     * Sets the most unsimulated time that is kept when the loop falls behind.
+     * @param maxBacklog The time in nanoseconds.
+     */
+    public void setMaxBacklog(final long maxBacklog)
+    {
+        this.maxBacklog = maxBacklog;
+    }
+
+    /**
+     * Gets the length of a simulation step.
+     * @return The length of a step in nanoseconds.
+     */
+    public long getStep()
+    {
+        return step;
+    }
+
+    /**
+     * Gets the total time that was dropped because the loop fell too far behind.
+     * @return The dropped time in nanoseconds.
+     */
+    public long getDroppedTime()
+    {
+        return droppedTime;
+    }
+
+}
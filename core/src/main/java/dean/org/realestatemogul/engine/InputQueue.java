@@ -0,0 +1,141 @@
+package dean.org.realestatemogul.engine;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A fixed size queue of input events passed from the UI thread to the game thread, so that the game
+ * is only ever changed on the game thread. Exactly one thread may add events and exactly one thread
+ * may drain them, which lets the queue work without locks. Events are stored in preallocated parallel
+ * arrays, so adding and draining them never allocates.
+ */
+public class InputQueue {
+
+    /**
+     * A finger was pressed down
+     */
+    public static final int PRESS = 0;
+
+    /**
+     * A finger was lifted
+     */
+    public static final int RELEASE = 1;
+
+    /**
+     * A finger moved while pressed
+     */
+    public static final int MOVE = 2;
+
+    /**
+     * The gesture was cancelled by the system, every finger should be treated as lifted without acting on it
+     */
+    public static final int CANCEL = 3;
+
+    /**
+     * Receives events as they are drained.
+     */
+    public interface Handler {
+
+        /**
+         * Called on the draining thread for each event, in the order they were added.
+         * @param type The type of event, such as PRESS, MOVE or RELEASE.
+         * @param pointer The id of the finger, which stays the same from when it's pressed until it's lifted.
+         * @param x The x coordinate of the event in game coordinates.
+         * @param y The y coordinate of the event in game coordinates.
+         */
+        void onInput(int type, int pointer, int x, int y);
+
+    }
+
+    private final int mask; // Capacity minus one, for wrapping positions onto the arrays
+    private final int[] types; // The type of each queued event
+    private final int[] pointers; // The finger of each queued event
+    private final int[] xs; // The x coordinate of each queued event
+    private final int[] ys; // The y coordinate of each queued event
+    private final AtomicLong head = new AtomicLong(); // The number of events drained, only written by the consumer
+    private final AtomicLong tail = new AtomicLong(); // The number of events added, only written by the producer
+    private long cachedHead = 0; // The producers last read of head, so it rarely has to read the consumers counter
+    private volatile long dropped = 0; // The number of events dropped because the queue was full, only written by the producer
+
+    /**
+     * Constructor for creating an empty queue.
+     * @param capacity The most events that can be waiting, rounded up to a power of two.
+     */
+    public InputQueue(final int capacity)
+    {
+        if(capacity < 1)
+            throw new IllegalArgumentException("Capacity must be at least 1");
+        final int size = Integer.highestOneBit(capacity - 1 | 1) << (capacity > 1 ? 1 : 0);
+        mask = size - 1;
+        types = new int[size];
+        pointers = new int[size];
+        xs = new int[size];
+        ys = new int[size];
+    }
+
+    /**
+     * Adds an event, called only from the producing thread.
+     * @param type The type of event, such as PRESS, MOVE or RELEASE.
+     * @param pointer The id of the finger.
+     * @param x The x coordinate of the event in game coordinates.
+     * @param y The y coordinate of the event in game coordinates.
+     * @return true if the event was added, false if the queue was full and the event was dropped.
+     */
+    public boolean offer(final int type, final int pointer, final int x, final int y)
+    {
+        final long position = tail.get();
+        if(position - cachedHead > mask)
+        {
+            cachedHead = head.get();
+            if(position - cachedHead > mask)
+            {
+                dropped++;
+                return false;
+            }
+        }
+        final int slot = (int) position & mask;
+        types[slot] = type;
+        pointers[slot] = pointer;
+        xs[slot] = x;
+        ys[slot] = y;
+        tail.lazySet(position + 1); // Publishes the event, the writes above happen before it
+        return true;
+    }
+
+    /**
+     * Passes every waiting event to a handler, called only from the consuming thread.
+     * Events added while draining are left for the next drain, so a flood of input can't stall a tick.
+     * @param handler Receives each event.
+     * @return The number of events drained.
+     */
+    public int drain(final Handler handler)
+    {
+        final long position = head.get();
+        final long end = tail.get();
+        for (long index = position; index < end; index++)
+        {
+            final int slot = (int) index & mask;
+            handler.onInput(types[slot], pointers[slot], xs[slot], ys[slot]);
+        }
+        head.lazySet(end); // Frees the slots for the producer once they've been read
+        return (int) (end - position);
+    }
+
+    /**
+     * Gets the number of events waiting to be drained.
+     * @return The number of events waiting.
+     */
+    public int size()
+    {
+        return (int) (tail.get() - head.get());
+    }
+
+    /**
+     * Gets the number of events dropped because the queue was full.
+     * @return The number of dropped events.
+     */
+    public long getDropped()
+    {
+        return dropped;
+    }
+
+}
@@ -0,0 +1,113 @@
+package dean.org.realestatemogul.engine;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Owns the thread a game loop runs on and ties it to the lifecycle of the screen it draws to.
+ * The loop only runs while the game is in the foreground and has a surface to draw on, the rest of
+ * the time its thread is parked, so a paused game uses no CPU. There is only ever one thread, which
+ * is stopped and joined on shutdown rather than being left to run.
+ */
+public class LoopController {
+
+    private final GameLoop loop; // The loop being run
+    private final String threadName; // The name of the loop's thread
+    private Thread thread; // The loop's thread, null until started
+    private boolean resumed = false; // Whether or not the game is in the foreground
+    private boolean surfaceAvailable = false; // Whether or not there is a surface to draw on
+
+    /**
+     * Constructor for a controller, the loop is paused until the game is both resumed and has a surface.
+     * @param loop The loop to run.
+     * @param threadName The name of the loop's thread.
+     */
+    public LoopController(final GameLoop loop, final String threadName)
+    {
+        this.loop = loop;
+        this.threadName = threadName;
+        loop.setPaused(true);
+    }
+
+    /**
+     * Starts the loop's thread, if it hasn't been started already. The loop stays parked until it can run.
+     */
+    public synchronized void start()
+    {
+        if(thread != null)
+            return;
+        thread = new Thread(loop, threadName);
+        thread.start();
+    }
+
+    /**
+     * Sets whether the game is in the foreground.
+     * @param resumed true if the game is in the foreground.
+     */
+    public synchronized void setResumed(final boolean resumed)
+    {
+        this.resumed = resumed;
+        loop.setPaused(!canRun());
+    }
+
+    /**
+     * Sets whether there is a surface to draw on.
+     * @param surfaceAvailable true if there is a surface.
+     */
+    public synchronized void setSurfaceAvailable(final boolean surfaceAvailable)
+    {
+        this.surfaceAvailable = surfaceAvailable;
+        loop.setPaused(!canRun());
+    }
+
+    /**
+     * Waits for the loop to park after being paused, so the game can be used from another thread,
+     * such as to save it, without racing the loop.
+     * A loop whose thread hasn't been started counts as parked, as it starts paused and nothing is running it.
+     * @param timeout The most time to wait.
+     * @param unit The unit of the timeout.
+     * @return true if the loop is parked, stopped or not yet started.
+     */
+    public boolean awaitParked(final long timeout, final TimeUnit unit)
+    {
+        synchronized (this)
+        {
+            if(thread == null)
+                return true;
+        }
+        return loop.awaitParked(unit.toNanos(timeout));
+    }
+
+    /**
+     * Stops the loop and waits for its thread to finish.
+     * @param timeout The most time to wait.
+     * @param unit The unit of the timeout.
+     * @return true if the thread finished in time.
+     */
+    public boolean shutdown(final long timeout, final TimeUnit unit)
+    {
+        final Thread thread;
+        synchronized (this)
+        {
+            thread = this.thread;
+        }
+        loop.stop();
+        if(thread == null)
+            return true;
+        try {
+            thread.join(Math.max(1, unit.toMillis(timeout)));
+        } catch(final InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+        return !thread.isAlive();
+    }
+
+    /**
+     * Whether or not the loop should be running.
+     * @return true if the game is in the foreground and has a surface.
+     */
+    public synchronized boolean canRun()
+    {
+        return resumed && surfaceAvailable;
+    }
+
+}
@@ -0,0 +1,56 @@
+package dean.org.realestatemogul.engine;
+
+/**
+ * Limits how fast taps are counted, so an auto clicker can't earn faster than a person could tap.
+ * Works as a token bucket measured in simulated time: every step earns credit, each tap spends the time
+ * between taps at the highest allowed rate, and unused credit is kept up to a short burst.
+ * Taps are counted in batches, so the cost is the same however many arrive in a step.
+ */
+public class TapLimiter {
+
+    private final long interval; // The shortest average time between taps in nanoseconds
+    private final long capacity; // The most credit that can be saved up in nanoseconds
+    private long credit; // Saved up time that taps can be spent against in nanoseconds
+    private long rejected = 0; // The number of taps that weren't counted
+
+    /**
+     * Constructor for the limiter, which starts with a full burst available.
+     * @param maxRate The most taps per second that are counted over time.
+     * @param burst The most taps that are counted at once after a pause.
+     */
+    public TapLimiter(final double maxRate, final int burst)
+    {
+        if(!(maxRate > 0) || burst < 1)
+            throw new IllegalArgumentException("The tap rate and burst must be positive");
+        interval = Math.max(1, (long) (NANOS_PER_SECOND / maxRate));
+        capacity = interval * burst;
+        credit = capacity;
+    }
+
+    /**
+     * Counts the taps made during a step, should be called every step even when there were no taps.
+     * @param taps The number of taps made.
+     * @param step The length of the step in nanoseconds.
+     * @return The number of taps that should be counted.
+     */
+    public int accept(final int taps, final long step)
+    {
+        credit = Math.min(capacity, credit + step);
+        final int accepted = (int) Math.min(taps, credit / interval);
+        credit -= accepted * interval;
+        rejected += taps - accepted;
+        return accepted;
+    }
+
+    /**
+     * Gets the number of taps that were over the limit.
+     * @return The number of taps that weren't counted.
+     */
+    public long getRejected()
+    {
+        return rejected;
+    }
+
+    private static final long NANOS_PER_SECOND = 1000000000L;
+
+}
@@ -0,0 +1,295 @@
+package dean.org.realestatemogul.engine;
+
+import java.util.Arrays;
+
+/**
+ * Schedules timers against a tick count, such as property payouts and timed boosts.
+ * Timers sit in a hierarchy of wheels of 64 slots each, the first wheel holds timers due within 64 ticks,
+ * the next within 64 * 64 ticks and so on. Each tick fires only the timers in one slot of the first wheel,
+ * and slots of the outer wheels are moved inwards as the first wheel comes back round, so no tick ever scans
+ * the pending timers. Ticks with nothing to fire or move are skipped over using a bit mask of the first
+ * wheel's occupied slots, so advancing by a long time costs the number of timers fired plus one step every 64 ticks.
+ * Timers due beyond the outermost wheel wait in an overflow list until it comes back round.
+ *
+ * Timers are preallocated entries linked into their slot's list by index, so scheduling, cancelling and firing
+ * are constant time and never allocate. A timer is referred to by a handle holding its entry and a generation
+ * number, so a stale handle to an entry that has since been reused can't cancel the new timer.
+ *
+ * The wheel has no clock of its own, it only moves when advanced, so it can be driven by the game's fixed steps
+ * or by a virtual clock.
+ */
+public class TimingWheel {
+
+    /**
+     * A handle that refers to no timer
+     */
+    public static final long NONE = -1;
+
+    /**
+     * Receives timers as they fire.
+     */
+    public interface Listener {
+
+        /**
+         * Called for each timer when its tick is reached. The timer is free before this is called,
+         * so it can be scheduled again straight away.
+         * @param tag The tag the timer was scheduled with.
+         */
+        void onExpired(int tag);
+
+    }
+
+    private static final int BITS = 6; // log2 of the number of slots in each wheel
+    private static final int SLOTS = 1 << BITS; // The number of slots in each wheel
+    private static final int LEVELS = 5; // The number of wheels, covering 2^30 ticks
+    private static final int OVERFLOW = LEVELS * SLOTS; // The list of timers due beyond the outermost wheel
+    private static final int FREE = -1; // The list of an entry that isn't scheduled
+
+    private final int[] heads; // The first entry in each slot's list, then the overflow list, -1 if empty
+    private long occupied = 0; // A bit for each slot of the first wheel that holds a timer
+    private final long[] deadlines; // The tick each entry is due on
+    private final int[] tags; // The tag each entry was scheduled with
+    private final int[] next; // The next entry in the same list, or in the free list
+    private final int[] previous; // The previous entry in the same list, -1 at the head
+    private final int[] lists; // The list holding each entry, FREE if it isn't scheduled
+    private final int[] generations; // Bumped each time an entry is freed, so old handles stop matching
+    private int freeHead; // The first unscheduled entry, -1 if every entry is in use
+    private int size = 0; // The number of scheduled timers
+    private long time = 0; // The number of ticks the wheel has been advanced by
+
+    /**
+     * Constructor for creating an empty wheel.
+     * @param capacity The most timers that can be scheduled at once.
+     */
+    public TimingWheel(final int capacity)
+    {
+        if(capacity < 1)
+            throw new IllegalArgumentException("Capacity must be at least 1");
+        heads = new int[OVERFLOW + 1];
+        Arrays.fill(heads, -1);
+        deadlines = new long[capacity];
+        tags = new int[capacity];
+        next = new int[capacity];
+        previous = new int[capacity];
+        lists = new int[capacity];
+        generations = new int[capacity];
+        Arrays.fill(lists, FREE);
+        for (int index = 0; index < capacity; index++)
+            next[index] = index + 1 < capacity ? index + 1 : -1;
+        freeHead = 0;
+    }
+
+    /**
+     * Schedules a timer.
+     * @param delay The number of ticks until the timer fires, at least one.
+     * @param tag Passed to the listener when the timer fires, such as the index of a property.
+     * @return A handle for cancelling the timer.
+     * @throws IllegalStateException If every entry is already scheduled.
+     */
+    public long schedule(final long delay, final int tag)
+    {
+        final int entry = freeHead;
+        if(entry == -1)
+            throw new IllegalStateException("All " + deadlines.length + " timers are scheduled");
+        freeHead = next[entry];
+        deadlines[entry] = time + Math.max(1, delay);
+        tags[entry] = tag;
+        insert(entry);
+        size++;
+        return ((long) generations[entry] << 32) | entry;
+    }
+
+    /**
+     * Cancels a timer if it hasn't fired yet.
+     * @param handle The handle returned when the timer was scheduled.
+     * @return true if the timer was cancelled, false if it had already fired or been cancelled.
+     */
+    public boolean cancel(final long handle)
+    {
+        if(handle == NONE)
+            return false;
+        final int entry = (int) handle;
+        if(entry < 0 || entry >= lists.length || lists[entry] == FREE || generations[entry] != (int) (handle >>> 32))
+            return false;
+        unlink(entry);
+        free(entry);
+        return true;
+    }
+
+    /**
+     * Advances the wheel, firing every timer that comes due in order of the tick it's due on.
+     * @param ticks The number of ticks to advance by.
+     * @param listener Receives each timer that fires.
+     * @return The number of timers that fired.
+     */
+    public int advance(final long ticks, final Listener listener)
+    {
+        int fired = 0;
+        final long end = time + ticks;
+        while (time < end)
+        {
+            if(size == 0)
+            {
+                time = end; // Nothing can fire, so there's nothing to move between wheels either
+                break;
+            }
+            time = Math.min(end, nextEvent());
+            cascade();
+            final int slot = (int) time & (SLOTS - 1);
+            int entry;
+            while ((entry = heads[slot]) != -1)
+            {
+                final int tag = tags[entry];
+                unlink(entry);
+                free(entry);
+                listener.onExpired(tag); // May schedule or cancel other timers, which never touch this slot
+                fired++;
+            }
+        }
+        return fired;
+    }
+
+    /**
+     * Finds the next tick that either fires a slot of the first wheel or could move timers down from the outer wheels.
+     * Every timer in the first wheel is due before it next comes round, so only the slots after the current one are looked at.
+     * @return The next tick that needs processing.
+     */
+    private long nextEvent()
+    {
+        final int position = (int) time & (SLOTS - 1);
+        final long later = position == SLOTS - 1 ? 0 : occupied & (-1L << (position + 1));
+        if(later != 0)
+            return (time & ~(long) (SLOTS - 1)) + Long.numberOfTrailingZeros(later);
+        return (time | (SLOTS - 1)) + 1;
+    }
+
+    /**
+     * Moves the timers of any outer wheel slots that have come round down into the inner wheels.
+     */
+    private void cascade()
+    {
+        for (int level = 1; level < LEVELS; level++)
+        {
+            if((time & ((1L << (BITS * level)) - 1)) != 0)
+                return;
+            reinsert(level * SLOTS + ((int) (time >>> (BITS * level)) & (SLOTS - 1)));
+        }
+        if((time & ((1L << (BITS * LEVELS)) - 1)) == 0)
+            reinsert(OVERFLOW);
+    }
+
+    /**
+     * Empties a list, putting each of its timers back in the slot it now belongs in.
+     * @param list The list.
+     */
+    private void reinsert(final int list)
+    {
+        int entry = heads[list];
+        heads[list] = -1;
+        while (entry != -1)
+        {
+            final int following = next[entry];
+            insert(entry);
+            entry = following;
+        }
+    }
+
+    /**
+     * Links an entry into the slot of the innermost wheel that its deadline falls within.
+     * The wheel is the one holding the highest bit where the deadline and current time differ,
+     * so the slot comes round before the deadline does.
+     * @param entry The entry.
+     */
+    private void insert(final int entry)
+    {
+        final long deadline = deadlines[entry];
+        final long difference = deadline ^ time;
+        final int level = difference == 0 ? 0 : (63 - Long.numberOfLeadingZeros(difference)) / BITS;
+        final int list = level >= LEVELS ? OVERFLOW : level * SLOTS + ((int) (deadline >>> (BITS * level)) & (SLOTS - 1));
+        lists[entry] = list;
+        if(list < SLOTS)
+            occupied |= 1L << list;
+        previous[entry] = -1;
+        next[entry] = heads[list];
+        if(heads[list] != -1)
+            previous[heads[list]] = entry;
+        heads[list] = entry;
+    }
+
+    /**
+     * Removes an entry from the list holding it.
+     * @param entry The entry.
+     */
+    private void unlink(final int entry)
+    {
+        final int before = previous[entry];
+        final int after = next[entry];
+        if(before == -1)
+        {
+            final int list = lists[entry];
+            heads[list] = after;
+            if(after == -1 && list < SLOTS)
+                occupied &= ~(1L << list);
+        }
+        else
+            next[before] = after;
+        if(after != -1)
+            previous[after] = before;
+    }
+
+    /**
+     * Returns an unlinked entry to the free list.
+     * @param entry The entry.
+     */
+    private void free(final int entry)
+    {
+        lists[entry] = FREE;
+        generations[entry]++;
+        next[entry] = freeHead;
+        freeHead = entry;
+        size--;
+    }
+
+    /**
+     * Gets the number of ticks until a timer fires.
+     * @param handle The handle returned when the timer was scheduled.
+     * @return The number of ticks left, or -1 if the timer has fired or been cancelled.
+     */
+    public long getRemaining(final long handle)
+    {
+        if(handle == NONE)
+            return -1;
+        final int entry = (int) handle;
+        if(entry < 0 || entry >= lists.length || lists[entry] == FREE || generations[entry] != (int) (handle >>> 32))
+            return -1;
+        return deadlines[entry] - time;
+    }
+
+    /**
+     * Gets the number of ticks the wheel has been advanced by.
+     * @return The current tick.
+     */
+    public long getTime()
+    {
+        return time;
+    }
+
+    /**
+     * Gets the number of timers waiting to fire.
+     * @return The number of scheduled timers.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Gets the most timers that can be scheduled at once.
+     * @return The capacity.
+     */
+    public int getCapacity()
+    {
+        return deadlines.length;
+    }
+
+}
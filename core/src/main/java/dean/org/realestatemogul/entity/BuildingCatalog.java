@@ -0,0 +1,266 @@
+package dean.org.realestatemogul.entity;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import dean.org.realestatemogul.economy.Money;
+
+/**
+ * The properties that can be bought, loaded from a data file so that adding one doesn't need any code.
+ * Each field is kept in its own array indexed by the property's position in the catalog,
+ * so anything that walks every property only touches the fields it needs.
+ *
+ * The file is comma separated with a header line, lines starting with # are ignored:
+ * key,name,base_cost,income,period,description
+ * Income is earned per second but paid out in one go every period seconds.
+ */
+public class BuildingCatalog {
+
+    /**
+     * The catalog shipped with the game, next to this class
+     */
+    public static final String DEFAULT_RESOURCE = "buildings.csv";
+
+    /**
+     * The amount the price of a property rises by each time one is bought
+     */
+    private static final double GROWTH = 1.15;
+    private static final double GROWTH_LOG10 = Math.log10(GROWTH);
+    private static final double GROWTH_LN = Math.log(GROWTH);
+    private static final double STEP_LOG10 = Math.log10(GROWTH - 1);
+
+    /**
+     * The number of comma separated fields on each line
+     */
+    private static final int FIELDS = 6;
+
+    private final String[] keys; // Identifies each property in saves and names its icon
+    private final String[] names; // The name shown for each property
+    private final String[] descriptions; // The description shown for each property
+    private final double[] baseCosts; // The price of the first of each property
+    private final double[] baseCostLog10s; // log10 of the price of the first of each property
+    private final double[] incomes; // The amount each property earns per second
+    private final double[] periods; // The seconds between each property's payouts
+    private final HashMap<String, Integer> indices; // Key to the index of the property
+
+    private BuildingCatalog(final List<String[]> rows)
+    {
+        final int count = rows.size();
+        keys = new String[count];
+        names = new String[count];
+        descriptions = new String[count];
+        baseCosts = new double[count];
+        baseCostLog10s = new double[count];
+        incomes = new double[count];
+        periods = new double[count];
+        indices = new HashMap<>(count * 2);
+        for (int index = 0; index < count; index++)
+        {
+            final String[] row = rows.get(index);
+            keys[index] = row[0];
+            names[index] = row[1];
+            baseCosts[index] = Double.parseDouble(row[2]);
+            baseCostLog10s[index] = Math.log10(baseCosts[index]);
+            incomes[index] = Double.parseDouble(row[3]);
+            periods[index] = Double.parseDouble(row[4]);
+            descriptions[index] = row[5];
+            indices.put(keys[index], index);
+        }
+    }
+
+    /**
+     * Gets the catalog shipped with the game, loading it the first time it's needed.
+     * @return The default catalog.
+     */
+    public static BuildingCatalog getDefault()
+    {
+        return Default.CATALOG;
+    }
+
+    /**
+     * Loads a catalog.
+     * @param input The catalog file, it is read to the end but not closed.
+     * @return The catalog.
+     * @throws IOException If the file couldn't be read.
+     * @throws IllegalArgumentException If a line of the file isn't a valid property.
+     */
+    public static BuildingCatalog load(final InputStream input) throws IOException
+    {
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(input, "UTF-8"));
+        final List<String[]> rows = new ArrayList<>();
+        final HashMap<String, Integer> seen = new HashMap<>();
+        boolean header = true;
+        int lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null)
+        {
+            lineNumber++;
+            line = line.trim();
+            if(line.isEmpty() || line.startsWith("#"))
+                continue;
+            if(header)
+            {
+                header = false;
+                continue;
+            }
+            final String[] row = line.split(",", FIELDS);
+            if(row.length != FIELDS)
+                throw new IllegalArgumentException("Line " + lineNumber + " of the building catalog should have " + FIELDS + " fields");
+            for (int index = 0; index < row.length; index++)
+                row[index] = row[index].trim();
+            if(row[0].isEmpty() || seen.put(row[0], lineNumber) != null)
+                throw new IllegalArgumentException("Line " + lineNumber + " of the building catalog has a missing or repeated key");
+            try {
+                if(!(Double.parseDouble(row[2]) > 0) || !(Double.parseDouble(row[3]) >= 0))
+                    throw new IllegalArgumentException("Line " + lineNumber + " of the building catalog has a negative cost or income");
+                if(!(Double.parseDouble(row[4]) > 0))
+                    throw new IllegalArgumentException("Line " + lineNumber + " of the building catalog has a period that isn't positive");
+            } catch(final NumberFormatException nfe) {
+                throw new IllegalArgumentException("Line " + lineNumber + " of the building catalog has an invalid number", nfe);
+            }
+            rows.add(row);
+        }
+        return new BuildingCatalog(rows);
+    }
+
+    /**
+     * Gets the price of the next of a property.
+     * @param index The index of the property.
+     * @param current The number of the property already owned.
+     * @param out The amount to store the price in.
+     * @return The amount passed in, for chaining.
+     */
+    public Money getCost(final int index, final int current, final Money out)
+    {
+        final double log10 = baseCostLog10s[index] + (current * GROWTH_LOG10);
+        if(log10 < 15)
+            return out.set(Math.ceil(baseCosts[index] * (Math.pow(GROWTH, current))));
+        return out.setLog10(log10);
+    }
+
+    /**
+     * Gets the price of buying several of a property at once.
+     * Prices rise geometrically, so the total is worked out in one step from the sum of the series
+     * rather than by adding up each price, which means bulk purchases aren't rounded up per property.
+     * @param index The index of the property.
+     * @param current The number of the property already owned.
+     * @param count The number of properties being bought.
+     * @param out The amount to store the price in.
+     * @return The amount passed in, for chaining.
+     */
+    public Money getTotalCost(final int index, final int current, final int count, final Money out)
+    {
+        if(count <= 1)
+            return count == 1 ? getCost(index, current, out) : out.set(0);
+        final double exponent = count * GROWTH_LN;
+        final double log10 = exponent < 700 ?
+                baseCostLog10s[index] + (current * GROWTH_LOG10) + Math.log10(Math.expm1(exponent)) - STEP_LOG10 :
+                baseCostLog10s[index] + ((current + count) * GROWTH_LOG10) - STEP_LOG10;
+        if(log10 < 15)
+            return out.set(Math.ceil(baseCosts[index] * Math.pow(GROWTH, current) * Math.expm1(exponent) / (GROWTH - 1)));
+        return out.setLog10(log10);
+    }
+
+    /**
+     * Gets the largest number of a property that can be bought at once,
+     * by solving the sum of the series for the number of properties.
+     * @param index The index of the property.
+     * @param current The number of the property already owned.
+     * @param funds The money available to spend.
+     * @param scratch An amount used for checking the answer, its value is overwritten.
+     * @return The number of properties that can be afforded, 0 if not even one can be.
+     */
+    public int getMaxAffordable(final int index, final int current, final Money funds, final Money scratch)
+    {
+        if(funds.signum() <= 0)
+            return 0;
+        // log10 of funds * (growth - 1) / price of the next property
+        final double ratio = funds.log10() - (baseCostLog10s[index] + (current * GROWTH_LOG10)) + STEP_LOG10;
+        final double count = ratio < 15 ? Math.log1p(Math.pow(10, ratio)) / GROWTH_LN : ratio / GROWTH_LOG10;
+        int affordable = (int) Math.min(Math.floor(count), (double) (Integer.MAX_VALUE - current));
+        while (affordable > 0 && !funds.isAtLeast(getTotalCost(index, current, affordable, scratch)))
+            affordable--;
+        return affordable;
+    }
+
+    /**
+     * Finds a property by its key.
+     * @param key The key of the property.
+     * @return The index of the property, -1 if there is no property with that key.
+     */
+    public int indexOf(final String key)
+    {
+        final Integer index = indices.get(key);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Gets the number of properties in the catalog.
+     * @return The number of properties.
+     */
+    public int getCount()
+    {
+        return keys.length;
+    }
+
+    public String getKey(final int index)
+    {
+        return keys[index];
+    }
+
+    public String getName(final int index)
+    {
+        return names[index];
+    }
+
+    public String getDescription(final int index)
+    {
+        return descriptions[index];
+    }
+
+    public double getIncome(final int index)
+    {
+        return incomes[index];
+    }
+
+    /**
+     * Gets how often a property pays out.
+     * @param index The index of the property.
+     * @return The seconds between payouts.
+     */
+    public double getPeriod(final int index)
+    {
+        return periods[index];
+    }
+
+    /**
+     * Holds the default catalog so it's only loaded when first used.
+     */
+    private static final class Default {
+
+        private static final BuildingCatalog CATALOG = loadDefault();
+
+        private static BuildingCatalog loadDefault()
+        {
+            final InputStream input = BuildingCatalog.class.getResourceAsStream(DEFAULT_RESOURCE);
+            if(input == null)
+                throw new IllegalStateException("The building catalog " + DEFAULT_RESOURCE + " is missing");
+            try {
+                try {
+                    return load(input);
+                } finally {
+                    input.close();
+                }
+            } catch(final IOException ioe) {
+                throw new IllegalStateException("The building catalog could not be read", ioe);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,225 @@
+package dean.org.realestatemogul.layout;
+
+/**
+ * The layout and scrolling of a vertical list of equally tall rows, such as the property list.
+ * Because every row is the same height, the rows on screen and the row under a touch are worked out
+ * with a division rather than by walking the list, so the cost of drawing and touching the list
+ * doesn't depend on how many rows it has. Dragging moves the list with the finger, and letting go
+ * while it's moving flings it, slowing with friction until it stops or reaches an end.
+ */
+public class ScrollList {
+
+    private static final float NANOS_PER_SECOND = 1000000000f;
+    private static final float FRICTION = 4f; // How quickly a fling slows down, the fraction of speed lost per second is 1 - e^-FRICTION
+    private static final float MIN_VELOCITY = 20f; // The speed in pixels per second below which a fling stops
+    private static final float VELOCITY_SMOOTHING = 0.5f; // How much each step's drag speed counts towards the fling speed
+    private static final int TOUCH_SLOP = 16; // The distance in pixels a touch can move and still count as a tap
+
+    private final int top; // The y coordinate of the top of the list
+    private final int height; // The height of the part of the list that's on screen
+    private final int rowHeight; // The height of each row
+    private int count; // The number of rows
+
+    private float offset = 0; // How far the list is scrolled in pixels
+    private float previousOffset = 0; // How far the list was scrolled after the previous step, for interpolating
+    private float steppedOffset = 0; // How far the list was scrolled after the last step
+    private float velocity = 0; // The speed of a fling, or of the finger while dragging, in pixels per second
+    private boolean dragging = false; // Whether or not a finger is on the list
+    private int lastY = 0; // Where the finger was last seen while dragging
+    private float stepTravel = 0; // How far the finger has moved the list since the last step
+    private int travel = 0; // How far the finger has moved in total since it was pressed
+    private boolean caught = false; // Whether or not the press stopped a fling, which shouldn't count as a tap
+
+    /**
+     * Constructor for creating a list scrolled to the top.
+     * @param top The y coordinate of the top of the list.
+     * @param height The height of the part of the list that's on screen.
+     * @param rowHeight The height of each row.
+     * @param count The number of rows.
+     */
+    public ScrollList(final int top, final int height, final int rowHeight, final int count)
+    {
+        this.top = top;
+        this.height = height;
+        this.rowHeight = rowHeight;
+        this.count = count;
+    }
+
+    /**
+     * Starts a drag, catching the list if it's being flung.
+     * @param y The y coordinate of the finger.
+     */
+    public void press(final int y)
+    {
+        dragging = true;
+        caught = velocity != 0;
+        velocity = 0;
+        lastY = y;
+        stepTravel = 0;
+        travel = 0;
+    }
+
+    /**
+     * Moves the list with the finger.
+     * @param y The y coordinate of the finger.
+     */
+    public void drag(final int y)
+    {
+        if(!dragging)
+            return;
+        final int delta = lastY - y;
+        lastY = y;
+        travel += Math.abs(delta);
+        final float before = offset;
+        offset = clamp(offset + delta);
+        stepTravel += offset - before;
+    }
+
+    /**
+     * Ends a drag, flinging the list at the speed the finger was moving unless the touch was a tap.
+     */
+    public void release()
+    {
+        if(!dragging)
+            return;
+        dragging = false;
+        if(isTap() || Math.abs(velocity) < MIN_VELOCITY)
+            velocity = 0;
+    }
+
+    /**
+     * Advances a fling by one step.
+     * @param step The length of the step in nanoseconds.
+     * @return true if the list moved since the last step.
+     */
+    public boolean update(final long step)
+    {
+        final float seconds = step / NANOS_PER_SECOND;
+        if(dragging)
+        {
+            velocity += (stepTravel / seconds - velocity) * VELOCITY_SMOOTHING;
+            stepTravel = 0;
+        }
+        else
+        if(velocity != 0)
+        {
+            final float target = offset + velocity * seconds;
+            offset = clamp(target);
+            velocity *= (float) Math.exp(-FRICTION * seconds);
+            if(offset != target || Math.abs(velocity) < MIN_VELOCITY)
+                velocity = 0;
+        }
+        previousOffset = steppedOffset;
+        steppedOffset = offset;
+        return previousOffset != steppedOffset;
+    }
+
+    /**
+     * Gets how far the list is scrolled, between the last two steps.
+     * @param interpolation How far between the last step and the next the frame is, from 0 to 1.
+     * @return The scroll offset in pixels.
+     */
+    public float getOffset(final float interpolation)
+    {
+        return previousOffset + (steppedOffset - previousOffset) * interpolation;
+    }
+
+    /**
+     * Gets the first row that is at least partly on screen.
+     * @param offset The scroll offset from {@link #getOffset(float)}.
+     * @return The index of the row.
+     */
+    public int getFirstVisible(final float offset)
+    {
+        return Math.max(0, Math.min(count - 1, (int) (offset / rowHeight)));
+    }
+
+    /**
+     * Gets the last row that is at least partly on screen.
+     * @param offset The scroll offset from {@link #getOffset(float)}.
+     * @return The index of the row, less than the first visible row if the list is empty.
+     */
+    public int getLastVisible(final float offset)
+    {
+        return Math.min(count - 1, (int) ((offset + height - 1) / rowHeight));
+    }
+
+    /**
+     * Gets the y coordinate of the top of a row.
+     * @param index The index of the row.
+     * @param offset The scroll offset from {@link #getOffset(float)}.
+     * @return The y coordinate, off the top or bottom of the list if the row isn't on screen.
+     */
+    public int getRowTop(final int index, final float offset)
+    {
+        return top + index * rowHeight - Math.round(offset);
+    }
+
+    /**
+     * Finds the row under a point, as it was last drawn.
+     * @param y The y coordinate of the point.
+     * @return The index of the row, -1 if there is no row there.
+     */
+    public int rowAt(final int y)
+    {
+        if(y < top || y >= top + height)
+            return -1;
+        final int index = (y - top + Math.round(steppedOffset)) / rowHeight;
+        return index < count ? index : -1;
+    }
+
+    /**
+     * Gets the most rows that can be on screen at once, including partly visible rows at the top and bottom.
+     * @return The number of rows.
+     */
+    public int getMaxVisibleRows()
+    {
+        return height / rowHeight + 2;
+    }
+
+    /**
+     * Changes the number of rows, keeping the list scrolled within its new length.
+     * @param count The number of rows.
+     */
+    public void setCount(final int count)
+    {
+        this.count = count;
+        offset = clamp(offset);
+    }
+
+    /**
+     * Whether or not the finger has stayed close enough to where it was pressed for the touch to be a tap.
+     * A press that catches a fling is never a tap, so stopping the list doesn't press what's under the finger.
+     * @return true if the touch is a tap.
+     */
+    public boolean isTap()
+    {
+        return travel < TOUCH_SLOP && !caught;
+    }
+
+    public boolean isDragging()
+    {
+        return dragging;
+    }
+
+    /**
+     * Whether or not the list is moving, from a drag or a fling.
+     * @return true if the list is moving.
+     */
+    public boolean isMoving()
+    {
+        return velocity != 0 || previousOffset != steppedOffset;
+    }
+
+    /**
+     * Keeps an offset between the top and bottom of the list.
+     * @param value The offset.
+     * @return The offset, moved inside the list if it was past either end.
+     */
+    private float clamp(final float value)
+    {
+        final float max = Math.max(0, count * (float) rowHeight - height);
+        return Math.max(0, Math.min(max, value));
+    }
+
+}
@@ -0,0 +1,15 @@
+package dean.org.realestatemogul.persistence;
+
+/**
+ * Somewhere that snapshots of the player can be stored and read back.
+ */
+public interface SaveBackend extends SaveSource {
+
+    /**
+     * Writes the players save, replacing any previous save.
+     * @param state The snapshot to write.
+     * @return true if the save was written.
+     */
+    boolean write(SaveState state);
+
+}
@@ -0,0 +1,15 @@
+package dean.org.realestatemogul.persistence;
+
+/**
+ * Somewhere that a snapshot of the player can be read from, such as an older save that is only read to migrate it.
+ */
+public interface SaveSource {
+
+    /**
+     * Reads the players save.
+     * @param out The snapshot to fill in.
+     * @return true if there was a save to read.
+     */
+    boolean read(SaveState out);
+
+}
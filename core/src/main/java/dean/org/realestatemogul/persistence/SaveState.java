@@ -0,0 +1,192 @@
+package dean.org.realestatemogul.persistence;
+
+import dean.org.realestatemogul.entity.BuildingCatalog;
+
+/**
+ * A snapshot of everything that is saved about the player.
+ * The amounts owned are indexed the same as the catalog, backends store them by each property's key
+ * so that properties can be added to or removed from the catalog without changing the save format.
+ * Snapshots are reused rather than created for every save, so copying one never allocates
+ * unless the number of properties has changed.
+ */
+public class SaveState {
+
+    private double moneyMantissa = 0; // The mantissa of the players money
+    private int moneyExponent = 0; // The exponent of the players money
+    private BuildingCatalog catalog; // The properties the amounts owned are indexed by
+    private int[] ownedProperties; // The amount of each property the player owns
+    private int[] payoutRemaining; // The time left until each property next pays out in milliseconds, 0 if it isn't known
+    private long savedAt = 0; // The wall clock time of the save in milliseconds
+    private long savedRealtime = 0; // The time since the device booted of the save in milliseconds
+    private boolean marketSaved = false; // Whether or not the property market is part of the snapshot
+    private long marketSeed = 0; // The seed of the property market
+    private long marketTicks = 0; // The number of ticks the property market had run for
+    private long[] marketStates; // The state of each property's market generator
+    private double[] marketDemands; // The market demand for each property, NaN where it wasn't saved
+
+    /**
+     * Constructor for creating an empty snapshot.
+     * @param catalog The properties that can be owned.
+     */
+    public SaveState(final BuildingCatalog catalog)
+    {
+        this.catalog = catalog;
+        ownedProperties = new int[catalog.getCount()];
+        payoutRemaining = new int[catalog.getCount()];
+        marketStates = new long[catalog.getCount()];
+        marketDemands = new double[catalog.getCount()];
+    }
+
+    /**
+     * Copies another snapshot into this one.
+     * @param other The snapshot to copy.
+     */
+    public void copyFrom(final SaveState other)
+    {
+        moneyMantissa = other.moneyMantissa;
+        moneyExponent = other.moneyExponent;
+        catalog = other.catalog;
+        if(ownedProperties.length != other.ownedProperties.length)
+            ownedProperties = new int[other.ownedProperties.length];
+        System.arraycopy(other.ownedProperties, 0, ownedProperties, 0, ownedProperties.length);
+        if(payoutRemaining.length != other.payoutRemaining.length)
+            payoutRemaining = new int[other.payoutRemaining.length];
+        System.arraycopy(other.payoutRemaining, 0, payoutRemaining, 0, payoutRemaining.length);
+        savedAt = other.savedAt;
+        savedRealtime = other.savedRealtime;
+        marketSaved = other.marketSaved;
+        marketSeed = other.marketSeed;
+        marketTicks = other.marketTicks;
+        if(marketStates.length != other.marketStates.length)
+        {
+            marketStates = new long[other.marketStates.length];
+            marketDemands = new double[other.marketDemands.length];
+        }
+        System.arraycopy(other.marketStates, 0, marketStates, 0, marketStates.length);
+        System.arraycopy(other.marketDemands, 0, marketDemands, 0, marketDemands.length);
+    }
+
+    /**
+     * Sets the players money.
+     * @param mantissa The mantissa of the players money.
+     * @param exponent The exponent of the players money.
+     */
+    public void setMoney(final double mantissa, final int exponent)
+    {
+        moneyMantissa = mantissa;
+        moneyExponent = exponent;
+    }
+
+    public double getMoneyMantissa()
+    {
+        return moneyMantissa;
+    }
+
+    public int getMoneyExponent()
+    {
+        return moneyExponent;
+    }
+
+    public BuildingCatalog getCatalog()
+    {
+        return catalog;
+    }
+
+    /**
+     * Gets the amount of each property the player owns.
+     * @return The amounts owned, this is the live array so it can be filled in directly.
+     */
+    public int[] getOwnedProperties()
+    {
+        return ownedProperties;
+    }
+
+    /**
+     * Gets the time left until each property next pays out, so a partly finished period isn't lost on loading.
+     * @return The times in milliseconds, 0 where it isn't known, this is the live array so it can be filled in directly.
+     */
+    public int[] getPayoutRemaining()
+    {
+        return payoutRemaining;
+    }
+
+    /**
+     * Sets when the snapshot was taken.
+     * @param savedAt The wall clock time in milliseconds.
+     * @param savedRealtime The time since the device booted in milliseconds.
+     */
+    public void setSavedAt(final long savedAt, final long savedRealtime)
+    {
+        this.savedAt = savedAt;
+        this.savedRealtime = savedRealtime;
+    }
+
+    public long getSavedAt()
+    {
+        return savedAt;
+    }
+
+    public long getSavedRealtime()
+    {
+        return savedRealtime;
+    }
+
+    /**
+     * Sets the seed and age of the property market, marking the market as part of the snapshot.
+     * Each property's generator and demand are filled in through {@link #getMarketStates()} and {@link #getMarketDemands()}.
+     * @param seed The seed of the market.
+     * @param ticks The number of ticks the market has run for.
+     */
+    public void setMarket(final long seed, final long ticks)
+    {
+        marketSaved = true;
+        marketSeed = seed;
+        marketTicks = ticks;
+    }
+
+    /**
+     * Marks the property market as not part of the snapshot, such as for saves from before it was saved.
+     */
+    public void clearMarket()
+    {
+        marketSaved = false;
+    }
+
+    /**
+     * Whether or not the property market is part of the snapshot.
+     * @return true if the market was saved.
+     */
+    public boolean hasMarket()
+    {
+        return marketSaved;
+    }
+
+    public long getMarketSeed()
+    {
+        return marketSeed;
+    }
+
+    public long getMarketTicks()
+    {
+        return marketTicks;
+    }
+
+    /**
+     * Gets the state of each property's market generator.
+     * @return The states, this is the live array so it can be filled in directly.
+     */
+    public long[] getMarketStates()
+    {
+        return marketStates;
+    }
+
+    /**
+     * Gets the market demand for each property.
+     * @return The demands, NaN where a property wasn't saved, this is the live array so it can be filled in directly.
+     */
+    public double[] getMarketDemands()
+    {
+        return marketDemands;
+    }
+
+}
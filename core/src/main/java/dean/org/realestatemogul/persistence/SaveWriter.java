@@ -0,0 +1,182 @@
+package dean.org.realestatemogul.persistence;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import dean.org.realestatemogul.entity.BuildingCatalog;
+
+/**
+ * Writes saves on a background thread so that saving never blocks the UI or game thread.
+ * Submitting a snapshot only copies it into a pending buffer, if a newer snapshot is submitted
+ * before the pending one is written the two are coalesced and only the newest is written.
+ * The pending and writing buffers are swapped rather than copied, so the writer never allocates.
+ */
+public class SaveWriter implements Runnable {
+
+    private final SaveBackend backend; // Where saves are written to
+    private final ReentrantLock lock = new ReentrantLock(); // Guards the buffers and counters below
+    private final Condition changed = lock.newCondition(); // Signalled when a save is submitted or written
+    private Thread thread; // The thread saves are written on
+
+    private SaveState pending; // The newest snapshot that hasn't been written yet
+    private SaveState writing; // The snapshot being written
+    private boolean hasPending = false; // Whether or not the pending buffer holds a snapshot
+    private boolean running = false; // Whether or not the writer thread should keep running
+    private long submitted = 0; // The number of snapshots submitted
+    private long written = 0; // The number of submitted snapshots that have been written or coalesced
+    private int failures = 0; // The number of writes that failed
+
+    /**
+     * Constructor for creating a writer.
+     * @param backend Where saves are written to.
+     * @param catalog The properties that can be owned.
+     */
+    public SaveWriter(final SaveBackend backend, final BuildingCatalog catalog)
+    {
+        this.backend = backend;
+        this.pending = new SaveState(catalog);
+        this.writing = new SaveState(catalog);
+    }
+
+    /**
+     * Starts the background thread.
+     */
+    public void start()
+    {
+        lock.lock();
+        try {
+            if(running)
+                return;
+            running = true;
+            thread = new Thread(this, "SaveWriter");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            thread.start();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queues a snapshot to be written, replacing any snapshot that hasn't been written yet.
+     * This only copies the snapshot, so it can be called from the game thread.
+     * @param state The snapshot to write.
+     */
+    public void submit(final SaveState state)
+    {
+        lock.lock();
+        try {
+            pending.copyFrom(state);
+            hasPending = true;
+            submitted++;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until every snapshot submitted before this call has been written, or the timeout passes.
+     * @param timeout The most time to wait.
+     * @param unit The unit of the timeout.
+     * @return true if everything submitted was written in time.
+     */
+    public boolean flush(final long timeout, final TimeUnit unit)
+    {
+        long remaining = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            final long target = submitted;
+            while (written < target)
+            {
+                if(remaining <= 0 || !running)
+                    return false;
+                remaining = changed.awaitNanos(remaining);
+            }
+            return true;
+        } catch(final InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes anything still pending and stops the background thread.
+     * @param timeout The most time to wait for the pending save.
+     * @param unit The unit of the timeout.
+     * @return true if everything submitted was written in time.
+     */
+    public boolean close(final long timeout, final TimeUnit unit)
+    {
+        final boolean flushed = flush(timeout, unit);
+        lock.lock();
+        try {
+            running = false;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        return flushed;
+    }
+
+    /**
+     * The writer thread, waits for snapshots and writes the newest one.
+     */
+    @Override
+    public void run()
+    {
+        while (true)
+        {
+            final long generation;
+            lock.lock();
+            try {
+                while (!hasPending && running)
+                    changed.awaitUninterruptibly();
+                if(!hasPending)
+                    return;
+                final SaveState swap = writing;
+                writing = pending;
+                pending = swap;
+                hasPending = false;
+                generation = submitted;
+            } finally {
+                lock.unlock();
+            }
+
+            boolean success;
+            try {
+                success = backend.write(writing);
+            } catch(final RuntimeException re) {
+                success = false;
+            }
+
+            lock.lock();
+            try {
+                if(!success)
+                    failures++;
+                written = generation;
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Gets the number of writes that failed.
+     * @return The number of failed writes.
+     */
+    public int getFailures()
+    {
+        lock.lock();
+        try {
+            return failures;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+}
@@ -0,0 +1,250 @@
+package dean.org.realestatemogul.persistence;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import dean.org.realestatemogul.entity.BuildingCatalog;
+
+/**
+ * Saves the player to a small binary file.
+ * The file is read through a memory mapped channel, so loading is a handful of reads with no parsing,
+ * and written to a temporary file that is renamed over the save, so a crash part way through a write
+ * leaves the previous save untouched. A checksum at the end of the file catches anything else.
+ * Properties are stored by key rather than position, so the catalog can change without a migration,
+ * properties that aren't in the catalog any more are ignored and new ones start at zero.
+ *
+ * The layout, all big endian, is:
+ * magic (int), version (int), property count (int), money mantissa (double), money exponent (int),
+ * saved at (long), saved realtime (long), market seed (long), market ticks (long, -1 if the market wasn't saved),
+ * then for each property in the catalog: key length (unsigned byte), key (UTF-8), amount owned (int),
+ * time until its next payout in milliseconds (int), market generator state (long), market demand (double),
+ * and finally the CRC32 of everything before it (int).
+ * Version 3 files had no market and only held the properties the player owns, so the market starts again from a new seed.
+ * Version 2 files also had no payout times, and version 1 files stored the amount owned of the six original properties
+ * in order, with no keys. Both load with every property starting a whole period.
+ */
+public class SnapshotFile implements SaveBackend {
+
+    /**
+     * Identifies the file as a save, the characters "REMS"
+     */
+    public static final int MAGIC = 0x52454D53;
+
+    /**
+     * The version of the layout written by this class
+     */
+    public static final int VERSION = 4;
+
+    private static final String[] VERSION_1_KEYS = { "tent", "caravan", "flat", "house", "mansion", "castle" }; // The properties stored in order by version 1
+    private static final int HEADER_SIZE = 56; // The size of everything before the properties in bytes
+    private static final int VERSION_3_HEADER_SIZE = 40; // The size of the header before the market was saved
+    private static final int CHECKSUM_SIZE = 4; // The size of the checksum in bytes
+    private static final int PROPERTY_SIZE = 24; // The size of each property after its key in bytes
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File file; // The save file
+    private final File temporary; // The file that saves are written to before being renamed over the save
+    private final CRC32 crc = new CRC32(); // Reused for working out checksums
+    private ByteBuffer buffer; // Reused for writing saves, grown when it's too small
+    private BuildingCatalog encodedCatalog; // The catalog that the encoded keys belong to
+    private byte[][] encodedKeys; // The key of each property in the catalog, encoded once rather than on every write
+
+    /**
+     * Constructor for a save file.
+     * @param file Where the save is stored, the temporary file is created next to it.
+     */
+    public SnapshotFile(final File file)
+    {
+        this.file = file;
+        this.temporary = new File(file.getPath() + ".tmp");
+    }
+
+    /**
+     * Whether or not a save file exists.
+     * @return true if the file exists.
+     */
+    public boolean exists()
+    {
+        return file.isFile();
+    }
+
+    /**
+     * Copies the save from another source if there is no save file yet, such as the database used by older versions.
+     * Once the save file exists the other source is never read again.
+     * @param legacy The source to copy from.
+     * @param catalog The properties that can be owned.
+     * @return true if a save was copied.
+     */
+    public boolean migrateFrom(final SaveSource legacy, final BuildingCatalog catalog)
+    {
+        if(exists())
+            return false;
+        final SaveState state = new SaveState(catalog);
+        return legacy.read(state) && write(state);
+    }
+
+    /**
+     * Reads the save file, checking that it's complete and its checksum matches.
+     * @param out The snapshot to fill in.
+     * @return true if there was a valid save to read.
+     */
+    @Override
+    public boolean read(final SaveState out)
+    {
+        if(!exists())
+            return false;
+        try (RandomAccessFile input = new RandomAccessFile(file, "r");
+             FileChannel channel = input.getChannel()) {
+            final long size = channel.size();
+            if(size < VERSION_3_HEADER_SIZE + CHECKSUM_SIZE || size > Integer.MAX_VALUE)
+                return false;
+            final MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            final int version = data.getInt(4);
+            if(data.getInt(0) != MAGIC || version < 1 || version > VERSION)
+                return false;
+            final int headerSize = version >= 4 ? HEADER_SIZE : VERSION_3_HEADER_SIZE;
+            if(size < headerSize + CHECKSUM_SIZE)
+                return false;
+            final int checksumOffset = (int) size - CHECKSUM_SIZE;
+            final ByteBuffer body = data.duplicate();
+            body.position(0);
+            body.limit(checksumOffset);
+            crc.reset();
+            crc.update(body);
+            if((int) crc.getValue() != data.getInt(checksumOffset))
+                return false;
+
+            final BuildingCatalog catalog = out.getCatalog();
+            final int[] owned = out.getOwnedProperties();
+            final int[] remaining = out.getPayoutRemaining();
+            final long[] states = out.getMarketStates();
+            final double[] demands = out.getMarketDemands();
+            final int count = data.getInt(8);
+            Arrays.fill(owned, 0);
+            Arrays.fill(remaining, 0);
+            Arrays.fill(states, 0);
+            Arrays.fill(demands, Double.NaN);
+            data.position(headerSize);
+            data.limit(checksumOffset);
+            for (int index = 0; index < count; index++)
+            {
+                final String key;
+                if(version == 1)
+                    key = index < VERSION_1_KEYS.length ? VERSION_1_KEYS[index] : null;
+                else
+                {
+                    final byte[] bytes = new byte[data.get() & 0xff];
+                    data.get(bytes);
+                    key = new String(bytes, UTF_8);
+                }
+                final int amount = data.getInt();
+                final int left = version >= 3 ? data.getInt() : 0;
+                final long state = version >= 4 ? data.getLong() : 0;
+                final double demand = version >= 4 ? data.getDouble() : Double.NaN;
+                final int property = key == null ? -1 : catalog.indexOf(key);
+                if(property != -1)
+                {
+                    owned[property] = amount;
+                    remaining[property] = left;
+                    states[property] = state;
+                    demands[property] = demand;
+                }
+            }
+            if(data.hasRemaining())
+                return false;
+            out.setMoney(data.getDouble(12), data.getInt(20));
+            out.setSavedAt(data.getLong(24), data.getLong(32));
+            if(version >= 4 && data.getLong(48) >= 0)
+                out.setMarket(data.getLong(40), data.getLong(48));
+            else
+                out.clearMarket();
+            return true;
+        } catch(final IOException | BufferUnderflowException | IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Writes the save to the temporary file, flushes it to disk and renames it over the save file.
+     * Every property in the catalog is written, as each has its own place in the market even when none are owned.
+     * @param state The snapshot to write.
+     * @return true if the save was written.
+     */
+    @Override
+    public boolean write(final SaveState state)
+    {
+        final int[] owned = state.getOwnedProperties();
+        final int[] remaining = state.getPayoutRemaining();
+        final long[] states = state.getMarketStates();
+        final double[] demands = state.getMarketDemands();
+        encodeKeys(state.getCatalog());
+        final int count = owned.length;
+        int size = HEADER_SIZE + CHECKSUM_SIZE;
+        for (int index = 0; index < count; index++)
+            size += 1 + encodedKeys[index].length + PROPERTY_SIZE;
+        if(buffer == null || buffer.capacity() < size)
+            buffer = ByteBuffer.allocate(Math.max(size, buffer == null ? 0 : buffer.capacity() * 2));
+        buffer.clear();
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(count);
+        buffer.putDouble(state.getMoneyMantissa());
+        buffer.putInt(state.getMoneyExponent());
+        buffer.putLong(state.getSavedAt());
+        buffer.putLong(state.getSavedRealtime());
+        buffer.putLong(state.getMarketSeed());
+        buffer.putLong(state.hasMarket() ? state.getMarketTicks() : -1);
+        for (int index = 0; index < count; index++)
+        {
+            buffer.put((byte) encodedKeys[index].length);
+            buffer.put(encodedKeys[index]);
+            buffer.putInt(owned[index]);
+            buffer.putInt(remaining[index]);
+            buffer.putLong(state.hasMarket() ? states[index] : 0);
+            buffer.putDouble(state.hasMarket() ? demands[index] : Double.NaN);
+        }
+        crc.reset();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+
+        try (FileOutputStream output = new FileOutputStream(temporary);
+             FileChannel channel = output.getChannel()) {
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+            channel.force(true);
+        } catch(final IOException ioe) {
+            temporary.delete();
+            return false;
+        }
+        return temporary.renameTo(file);
+    }
+
+    /**
+     * Encodes the key of every property in a catalog, if it isn't the catalog that was last encoded.
+     * @param catalog The catalog of properties.
+     */
+    private void encodeKeys(final BuildingCatalog catalog)
+    {
+        if(catalog == encodedCatalog)
+            return;
+        encodedKeys = new byte[catalog.getCount()][];
+        for (int index = 0; index < encodedKeys.length; index++)
+        {
+            encodedKeys[index] = catalog.getKey(index).getBytes(UTF_8);
+            if(encodedKeys[index].length > 255)
+                throw new IllegalArgumentException("The key " + catalog.getKey(index) + " is longer than 255 bytes");
+        }
+        encodedCatalog = catalog;
+    }
+
+}
@@ -0,0 +1,143 @@
+package dean.org.realestatemogul.profile;
+
+/**
+ * A fixed size histogram of non-negative values, such as timings in nanoseconds.
+ * Like an HDR histogram, values below 64 each get their own bucket and every power of two above that
+ * is split into 32 equal buckets, so any value is recorded to within about 3% using a few thousand counters.
+ * Recording is a handful of integer operations and never allocates.
+ */
+public class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 5; // Each power of two is split into 2^5 buckets
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT = SUB_BUCKETS * 2; // Values below this have their own bucket
+    private static final int BUCKET_COUNT = LINEAR_LIMIT + (63 - (SUB_BUCKET_BITS + 1)) * SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKET_COUNT]; // The number of values recorded in each bucket
+    private long totalCount = 0; // The number of values recorded
+    private long sum = 0; // The sum of the values recorded, for the mean
+    private long min = Long.MAX_VALUE; // The smallest value recorded
+    private long max = 0; // The largest value recorded
+
+    /**
+     * Records a value.
+     * @param value The value, negative values are recorded as 0.
+     */
+    public void record(long value)
+    {
+        if(value < 0)
+            value = 0;
+        counts[indexOf(value)]++;
+        totalCount++;
+        sum += value;
+        if(value < min)
+            min = value;
+        if(value > max)
+            max = value;
+    }
+
+    /**
+     * Gets the value at a percentile, such as 99 for the value that 99% of values are at or below.
+     * @param percentile The percentile, from 0 to 100.
+     * @return The highest value in the bucket holding the percentile, never more than the largest value recorded, 0 if nothing has been recorded.
+     */
+    public long getValueAtPercentile(final double percentile)
+    {
+        if(totalCount == 0)
+            return 0;
+        final long target = Math.max(1, (long) Math.ceil(totalCount * Math.min(100, Math.max(0, percentile)) / 100));
+        long seen = 0;
+        for (int index = 0; index < counts.length; index++)
+        {
+            seen += counts[index];
+            if(seen >= target)
+                return Math.min(max, Math.max(min, highestValueOf(index)));
+        }
+        return max;
+    }
+
+    /**
+     * Copies another histogram into this one, such as to read it on another thread.
+     * @param other The histogram to copy.
+     */
+    public void copyFrom(final Histogram other)
+    {
+        System.arraycopy(other.counts, 0, counts, 0, counts.length);
+        totalCount = other.totalCount;
+        sum = other.sum;
+        min = other.min;
+        max = other.max;
+    }
+
+    /**
+     * Forgets every value recorded.
+     */
+    public void reset()
+    {
+        for (int index = 0; index < counts.length; index++)
+            counts[index] = 0;
+        totalCount = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+    }
+
+    public long getTotalCount()
+    {
+        return totalCount;
+    }
+
+    /**
+     * Gets the smallest value recorded.
+     * @return The smallest value, 0 if nothing has been recorded.
+     */
+    public long getMin()
+    {
+        return totalCount == 0 ? 0 : min;
+    }
+
+    public long getMax()
+    {
+        return max;
+    }
+
+    /**
+     * Gets the mean of the values recorded.
+     * @return The mean, 0 if nothing has been recorded.
+     */
+    public double getMean()
+    {
+        return totalCount == 0 ? 0 : (double) sum / totalCount;
+    }
+
+    /**
+     * Gets the bucket a value is counted in.
+     * @param value The value, not negative.
+     * @return The index of the bucket.
+     */
+    private static int indexOf(final long value)
+    {
+        if(value < LINEAR_LIMIT)
+            return (int) value;
+        final int magnitude = 63 - Long.numberOfLeadingZeros(value); // At least SUB_BUCKET_BITS + 1
+        final int shift = magnitude - SUB_BUCKET_BITS;
+        final int subBucket = (int) (value >>> shift) - SUB_BUCKETS; // The bits below the leading one
+        return LINEAR_LIMIT + (magnitude - (SUB_BUCKET_BITS + 1)) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Gets the highest value counted in a bucket.
+     * @param index The index of the bucket.
+     * @return The highest value.
+     */
+    private static long highestValueOf(final int index)
+    {
+        if(index < LINEAR_LIMIT)
+            return index;
+        final int magnitude = (index - LINEAR_LIMIT) / SUB_BUCKETS + SUB_BUCKET_BITS + 1;
+        final int shift = magnitude - SUB_BUCKET_BITS;
+        final long lowest = (long) (SUB_BUCKETS + (index - LINEAR_LIMIT) % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+}
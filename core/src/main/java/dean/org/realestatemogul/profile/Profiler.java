@@ -0,0 +1,238 @@
+package dean.org.realestatemogul.profile;
+
+import dean.org.realestatemogul.engine.Clock;
+
+/**
+ * Records how long each phase of a frame takes, such as updating the game, rendering it and posting it to the screen,
+ * along with how many frames go over their time budget and, where the platform can count them, how many allocations each frame makes.
+ * Timings are kept in fixed size histograms so profiling can be left running without allocating.
+ * Phases and frames should be recorded on the game thread, histograms read from any other thread
+ * should be copied with {@link #copyHistogram(int, Histogram)} first.
+ */
+public class Profiler {
+
+    /**
+     * Phases of a frame that are timed
+     */
+    public static final int UPDATE = 0;
+    public static final int RENDER = 1;
+    public static final int BLIT = 2;
+    public static final int FRAME = 3;
+    public static final int PHASE_COUNT = 4;
+
+    private static final String[] PHASE_NAMES = { "update", "render", "blit", "frame" };
+
+    /**
+     * Counts the allocations made by the current thread.
+     */
+    public interface AllocationCounter {
+
+        /**
+         * Used when the platform can't count allocations.
+         */
+        AllocationCounter NONE = new AllocationCounter() {
+            @Override
+            public long getAllocations()
+            {
+                return 0;
+            }
+        };
+
+        /**
+         * Gets the number of allocations the current thread has made.
+         * @return A running total, only differences between readings have meaning.
+         */
+        long getAllocations();
+
+    }
+
+    private final Clock clock; // Source of the timings
+    private final long frameBudget; // The longest a frame can take without being counted as jank, in nanoseconds
+    private final Histogram[] phases = new Histogram[PHASE_COUNT]; // The time taken by each phase in nanoseconds
+    private final Histogram allocations = new Histogram(); // The number of allocations made in each frame
+    private AllocationCounter allocationCounter = AllocationCounter.NONE; // Counts allocations, if the platform can
+    private boolean enabled = false; // Whether or not anything is recorded
+    private long frameStart = -1; // When the current frame started, -1 if no frame is being recorded
+    private long frameAllocations = 0; // The allocation count when the current frame started
+    private long frameCount = 0; // The number of frames recorded
+    private long jankCount = 0; // The number of frames that went over the budget
+
+    /**
+     * Constructor for creating a profiler, it is disabled until {@link #setEnabled(boolean)} is called.
+     * @param clock The clock to time phases with.
+     * @param frameBudget The longest a frame can take without being counted as jank, in nanoseconds.
+     */
+    public Profiler(final Clock clock, final long frameBudget)
+    {
+        this.clock = clock;
+        this.frameBudget = frameBudget;
+        for (int index = 0; index < phases.length; index++)
+            phases[index] = new Histogram();
+    }
+
+    /**
+     * Starts timing a phase.
+     * @return The start time to pass to {@link #stop(int, long)}.
+     */
+    public long start()
+    {
+        return enabled ? clock.nanoTime() : 0;
+    }
+
+    /**
+     * Finishes timing a phase.
+     * @param phase The phase, such as UPDATE.
+     * @param start The time returned by {@link #start()}.
+     */
+    public void stop(final int phase, final long start)
+    {
+        if(enabled)
+            phases[phase].record(clock.nanoTime() - start);
+    }
+
+    /**
+     * Starts recording a frame, if one isn't already being recorded.
+     * This can be called at the start of every phase so that a frame starts at whichever phase comes first.
+     */
+    public void beginFrame()
+    {
+        if(!enabled || frameStart != -1)
+            return;
+        frameAllocations = allocationCounter.getAllocations();
+        frameStart = clock.nanoTime();
+    }
+
+    /**
+     * Finishes recording a frame, counting it as jank if it went over the budget.
+     */
+    public void endFrame()
+    {
+        if(!enabled || frameStart == -1)
+            return;
+        final long duration = clock.nanoTime() - frameStart;
+        frameStart = -1;
+        phases[FRAME].record(duration);
+        allocations.record(allocationCounter.getAllocations() - frameAllocations);
+        frameCount++;
+        if(duration > frameBudget)
+            jankCount++;
+    }
+
+    /**
+     * Forgets everything recorded.
+     */
+    public void reset()
+    {
+        for (int index = 0; index < phases.length; index++)
+            phases[index].reset();
+        allocations.reset();
+        frameStart = -1;
+        frameCount = 0;
+        jankCount = 0;
+    }
+
+    /**
+     * Writes a summary of everything recorded, one line per phase, with times in microseconds.
+     * @param out Where to write the summary.
+     * @return The builder passed in, for chaining.
+     */
+    public StringBuilder report(final StringBuilder out)
+    {
+        for (int index = 0; index < phases.length; index++)
+        {
+            final Histogram histogram = phases[index];
+            out.append(PHASE_NAMES[index])
+               .append(": count=").append(histogram.getTotalCount())
+               .append(" mean=").append((long) histogram.getMean() / 1000)
+               .append("us p50=").append(histogram.getValueAtPercentile(50) / 1000)
+               .append("us p99=").append(histogram.getValueAtPercentile(99) / 1000)
+               .append("us max=").append(histogram.getMax() / 1000)
+               .append("us\n");
+        }
+        out.append("jank: ").append(jankCount).append('/').append(frameCount)
+           .append(" frames over ").append(frameBudget / 1000).append("us\n");
+        out.append("allocations per frame: p50=").append(allocations.getValueAtPercentile(50))
+           .append(" p99=").append(allocations.getValueAtPercentile(99))
+           .append(" max=").append(allocations.getMax()).append('\n');
+        return out;
+    }
+
+    /**
+     * Copies the timings of a phase, so they can be read on another thread.
+     * @param phase The phase, such as UPDATE.
+     * @param out The histogram to copy into.
+     */
+    public void copyHistogram(final int phase, final Histogram out)
+    {
+        out.copyFrom(phases[phase]);
+    }
+
+    /**
+     * Gets the timings of a phase.
+     * @param phase The phase, such as UPDATE.
+     * @return The timings in nanoseconds, this is the live histogram so it should only be read on the game thread.
+     */
+    public Histogram getHistogram(final int phase)
+    {
+        return phases[phase];
+    }
+
+    /**
+     * Gets the number of allocations made in each frame.
+     * @return The allocations, this is the live histogram so it should only be read on the game thread.
+     */
+    public Histogram getAllocations()
+    {
+        return allocations;
+    }
+
+    /**
+     * Gets the name of a phase.
+     * @param phase The phase, such as UPDATE.
+     * @return The name of the phase.
+     */
+    public static String getPhaseName(final int phase)
+    {
+        return PHASE_NAMES[phase];
+    }
+
+    public long getFrameCount()
+    {
+        return frameCount;
+    }
+
+    public long getJankCount()
+    {
+        return jankCount;
+    }
+
+    public long getFrameBudget()
+    {
+        return frameBudget;
+    }
+
+    /**
+     * Sets how allocations are counted.
+     * @param allocationCounter The counter, or {@link AllocationCounter#NONE} if the platform can't count allocations.
+     */
+    public void setAllocationCounter(final AllocationCounter allocationCounter)
+    {
+        this.allocationCounter = allocationCounter;
+    }
+
+    /**
+     * Turns recording on or off, while off every method returns straight away.
+     * @param enabled Whether or not to record.
+     */
+    public void setEnabled(final boolean enabled)
+    {
+        this.enabled = enabled;
+        frameStart = -1;
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+}
@@ -0,0 +1,73 @@
+package dean.org.realestatemogul.profile;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import dean.org.realestatemogul.engine.Clock;
+
+/**
+ * Times the stages of a one off process such as starting the game, where the stages may run on different threads.
+ * Stages are reported in the order they finished, along with the time from when the timer was made.
+ */
+public class StageTimer {
+
+    private final Clock clock; // The clock stages are timed with
+    private final long created; // When the timer was made in nanoseconds
+    private final List<String> stages = new ArrayList<>(); // The name of each finished stage, in the order they finished
+    private final List<long[]> times = new ArrayList<>(); // The start and end of each finished stage
+
+    /**
+     * Constructor for the timer, the time it's made is treated as the start of the process.
+     * @param clock The clock stages are timed with.
+     */
+    public StageTimer(final Clock clock)
+    {
+        this.clock = clock;
+        created = clock.nanoTime();
+    }
+
+    /**
+     * Gets the start time of a stage.
+     * @return The current time in nanoseconds.
+     */
+    public long start()
+    {
+        return clock.nanoTime();
+    }
+
+    /**
+     * Records a stage that has finished, can be called from any thread.
+     * @param stage The name of the stage.
+     * @param start The time from {@link #start()} when the stage began.
+     * @return The length of the stage in nanoseconds.
+     */
+    public long stop(final String stage, final long start)
+    {
+        final long end = clock.nanoTime();
+        synchronized (this)
+        {
+            stages.add(stage);
+            times.add(new long[] { start, end });
+        }
+        return end - start;
+    }
+
+    /**
+     * Writes a line per stage with how long it took and when it finished relative to the timer being made.
+     * @param out The builder to write the report to.
+     * @return The builder passed in, for chaining.
+     */
+    public synchronized StringBuilder report(final StringBuilder out)
+    {
+        for (int index = 0; index < stages.size(); index++)
+        {
+            final long[] time = times.get(index);
+            out.append(stages.get(index))
+               .append(": ").append((time[1] - time[0]) / 1000000)
+               .append("ms, done at ").append((time[1] - created) / 1000000)
+               .append("ms\n");
+        }
+        return out;
+    }
+
+}
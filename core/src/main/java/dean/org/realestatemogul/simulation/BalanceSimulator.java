@@ -0,0 +1,248 @@
+package dean.org.realestatemogul.simulation;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import dean.org.realestatemogul.economy.Economy;
+import dean.org.realestatemogul.entity.BuildingCatalog;
+import dean.org.realestatemogul.profile.Histogram;
+
+/**
+ * Plays the economy headlessly to see how long each property takes to reach under a purchase strategy.
+ * Time is simulated by stepping the economy in whole check-in intervals rather than frames,
+ * so a day of play takes around twenty milliseconds per run on one core, most of it moving the market and paying out
+ * properties once a simulated second. Each run is seeded from the simulation's seed and its own number,
+ * and the results are gathered in run order, so the same seed gives the same results on any number of cores.
+ */
+public class BalanceSimulator {
+
+    /**
+     * The number of runs below which the work isn't split any further between threads
+     */
+    private static final int SPLIT_THRESHOLD = 16;
+
+    private final BuildingCatalog catalog; // The properties being balanced
+    private final PurchaseStrategy strategy; // How the simulated players spend their money
+    private final long duration; // The length of each run in simulated nanoseconds
+    private final long checkInterval; // The average time between the player's purchases in nanoseconds
+    private final double tapRate; // The average number of times per second the player presses the coin
+
+    /**
+     * Constructor for the simulator.
+     * @param catalog The properties being balanced.
+     * @param strategy How the simulated players spend their money.
+     * @param duration The length of each run in simulated nanoseconds.
+     * @param checkInterval The average time between the player's purchases in nanoseconds,
+     *                      each interval is varied between half and one and a half times this.
+     * @param tapRate The average number of times per second the player presses the coin,
+     *                each player presses it between half and one and a half times this often.
+     */
+    public BalanceSimulator(final BuildingCatalog catalog, final PurchaseStrategy strategy, final long duration,
+                            final long checkInterval, final double tapRate)
+    {
+        if(checkInterval <= 0)
+            throw new IllegalArgumentException("The check in interval must be positive");
+        this.catalog = catalog;
+        this.strategy = strategy;
+        this.duration = duration;
+        this.checkInterval = checkInterval;
+        this.tapRate = tapRate;
+    }
+
+    /**
+     * Simulates many players in parallel.
+     * @param seed The seed the runs are generated from.
+     * @param runs The number of runs.
+     * @param pool The pool the runs are shared between.
+     * @return When each property was first bought across the runs.
+     */
+    public Result run(final long seed, final int runs, final ForkJoinPool pool)
+    {
+        final int milestones = catalog.getCount();
+        final long[] times = new long[runs * milestones];
+        pool.invoke(new Runs(seed, 0, runs, times));
+
+        final Result result = new Result(catalog, strategy, runs);
+        for (int index = 0; index < times.length; index++)
+        {
+            if(times[index] >= 0)
+                result.milestones[index % milestones].record(times[index]);
+        }
+        return result;
+    }
+
+    /**
+     * Simulates a single player, so that any run of a simulation can be reproduced on its own.
+     * @param seed The seed of the simulation.
+     * @param run The number of the run within the simulation.
+     * @param times Where to store when each property was first bought, in simulated seconds, -1 if it never was.
+     * @param offset The position in times to store the first property at.
+     */
+    public void simulate(final long seed, final int run, final long[] times, final int offset)
+    {
+        final Random random = new Random(seed ^ (run * 0x9E3779B97F4A7C15L));
+        final Economy economy = new Economy(catalog, random.nextLong());
+        final int milestones = catalog.getCount();
+        final double taps = tapRate * (0.5 + random.nextDouble());
+        Arrays.fill(times, offset, offset + milestones, -1);
+
+        int reached = 0;
+        long time = 0;
+        while (time < duration && reached < milestones)
+        {
+            int choice;
+            while ((choice = strategy.choose(economy)) != -1 && economy.purchase(choice))
+            {
+            }
+            for (int index = 0; index < milestones; index++)
+            {
+                if(times[offset + index] == -1 && economy.getOwned(index) > 0)
+                {
+                    times[offset + index] = time / NANOS_PER_SECOND;
+                    reached++;
+                }
+            }
+            final long interval = (long) (checkInterval * (0.5 + random.nextDouble()));
+            economy.earn(Math.floor(taps * interval / NANOS_PER_SECOND));
+            economy.update(interval);
+            time += interval;
+        }
+    }
+
+    /**
+     * Runs the balance simulation from the command line and prints when each property is reached.
+     * @param args The strategy (greedy, cheapest or saving), the number of runs, the hours each run lasts and the seed.
+     */
+    public static void main(final String[] args)
+    {
+        final String name = args.length > 0 ? args[0] : "greedy";
+        final int runs = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        final long hours = args.length > 2 ? Long.parseLong(args[2]) : 24;
+        final long seed = args.length > 3 ? Long.parseLong(args[3]) : 1;
+
+        final PurchaseStrategy strategy;
+        if(name.equals("greedy"))
+            strategy = PurchaseStrategy.GREEDY_ROI;
+        else
+        if(name.equals("cheapest"))
+            strategy = PurchaseStrategy.CHEAPEST_FIRST;
+        else
+        if(name.equals("saving"))
+            strategy = new SavingStrategy(DEFAULT_PATIENCE);
+        else
+            throw new IllegalArgumentException("Unknown strategy " + name + ", expected greedy, cheapest or saving");
+
+        final BalanceSimulator simulator = new BalanceSimulator(BuildingCatalog.getDefault(), strategy,
+                hours * 3600 * NANOS_PER_SECOND, DEFAULT_CHECK_INTERVAL, DEFAULT_TAP_RATE);
+        final long start = System.nanoTime();
+        final Result result = simulator.run(seed, runs, ForkJoinPool.commonPool());
+        final long elapsed = (System.nanoTime() - start) / 1000000;
+        System.out.print(result.report(new StringBuilder()));
+        System.out.println(runs + " runs of " + hours + "h in " + elapsed + "ms");
+    }
+
+    /**
+     * When each property was first bought across many runs.
+     */
+    public static final class Result {
+
+        private final BuildingCatalog catalog; // The properties that were simulated
+        private final PurchaseStrategy strategy; // The strategy that was simulated
+        private final int runs; // The number of runs
+        private final Histogram[] milestones; // Simulated seconds until each property was first bought, in the runs that bought it
+
+        private Result(final BuildingCatalog catalog, final PurchaseStrategy strategy, final int runs)
+        {
+            this.catalog = catalog;
+            this.strategy = strategy;
+            this.runs = runs;
+            milestones = new Histogram[catalog.getCount()];
+            for (int index = 0; index < milestones.length; index++)
+                milestones[index] = new Histogram();
+        }
+
+        /**
+         * Gets when a property was first bought.
+         * @param index The index of the property.
+         * @return Simulated seconds until the property was first bought, only from the runs that bought it.
+         */
+        public Histogram getMilestone(final int index)
+        {
+            return milestones[index];
+        }
+
+        public int getRuns()
+        {
+            return runs;
+        }
+
+        /**
+         * Writes a line per property with how many runs reached it and the spread of how long it took.
+         * @param out The builder to write the report to.
+         * @return The builder passed in, for chaining.
+         */
+        public StringBuilder report(final StringBuilder out)
+        {
+            out.append("strategy: ").append(strategy).append('\n');
+            for (int index = 0; index < milestones.length; index++)
+            {
+                final Histogram histogram = milestones[index];
+                out.append(catalog.getName(index))
+                   .append(": reached=").append(histogram.getTotalCount()).append('/').append(runs);
+                if(histogram.getTotalCount() > 0)
+                {
+                    out.append(" p10=").append(histogram.getValueAtPercentile(10))
+                       .append("s p50=").append(histogram.getValueAtPercentile(50))
+                       .append("s p90=").append(histogram.getValueAtPercentile(90))
+                       .append("s max=").append(histogram.getMax()).append('s');
+                }
+                out.append('\n');
+            }
+            return out;
+        }
+
+    }
+
+    /**
+     * Splits a range of runs in half until it's small enough to simulate on one thread.
+     */
+    private final class Runs extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long seed; // The seed of the simulation
+        private final int from; // The first run in the range
+        private final int to; // One past the last run in the range
+        private final long[] times; // Where every run stores its results
+
+        private Runs(final long seed, final int from, final int to, final long[] times)
+        {
+            this.seed = seed;
+            this.from = from;
+            this.to = to;
+            this.times = times;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if(to - from <= SPLIT_THRESHOLD)
+            {
+                for (int run = from; run < to; run++)
+                    simulate(seed, run, times, run * catalog.getCount());
+                return;
+            }
+            final int middle = (from + to) >>> 1;
+            invokeAll(new Runs(seed, from, middle, times), new Runs(seed, middle, to, times));
+        }
+
+    }
+
+    private static final long NANOS_PER_SECOND = 1000000000L;
+    private static final long DEFAULT_CHECK_INTERVAL = 10 * NANOS_PER_SECOND; // A purchase decision every ten seconds
+    private static final double DEFAULT_TAP_RATE = 2; // Two presses of the coin a second
+    private static final double DEFAULT_PATIENCE = 600; // Save for up to ten minutes
+
+}
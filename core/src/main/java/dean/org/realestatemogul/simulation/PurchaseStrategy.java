@@ -0,0 +1,80 @@
+package dean.org.realestatemogul.simulation;
+
+import dean.org.realestatemogul.economy.Economy;
+import dean.org.realestatemogul.entity.BuildingCatalog;
+
+/**
+ * Decides what a simulated player buys next. Strategies are shared between runs on different threads,
+ * so they must not keep any state of their own.
+ */
+public interface PurchaseStrategy {
+
+    /**
+     * Buys whichever property pays for itself soonest, waiting for it if it can't be afforded yet.
+     */
+    PurchaseStrategy GREEDY_ROI = new PurchaseStrategy() {
+        @Override
+        public int choose(final Economy economy)
+        {
+            final BuildingCatalog catalog = economy.getCatalog();
+            int best = -1;
+            double bestPayback = Double.POSITIVE_INFINITY;
+            for (int index = 0; index < economy.getBuildingCount(); index++)
+            {
+                final double income = catalog.getIncome(index);
+                if(income <= 0)
+                    continue;
+                // log10 of the seconds the purchase takes to pay for itself
+                final double payback = economy.getPrice(index).log10() - Math.log10(economy.getQuantity(index) * income);
+                if(payback < bestPayback)
+                {
+                    bestPayback = payback;
+                    best = index;
+                }
+            }
+            return best;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "greedy";
+        }
+    };
+
+    /**
+     * Buys whichever property is cheapest.
+     */
+    PurchaseStrategy CHEAPEST_FIRST = new PurchaseStrategy() {
+        @Override
+        public int choose(final Economy economy)
+        {
+            int best = -1;
+            double bestPrice = Double.POSITIVE_INFINITY;
+            for (int index = 0; index < economy.getBuildingCount(); index++)
+            {
+                final double price = economy.getPrice(index).log10();
+                if(price < bestPrice)
+                {
+                    bestPrice = price;
+                    best = index;
+                }
+            }
+            return best;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "cheapest";
+        }
+    };
+
+    /**
+     * Chooses the property to buy next.
+     * @param economy The simulated player's economy, which shouldn't be modified.
+     * @return The index of the property to buy, bought as soon as it's affordable, or -1 to buy nothing.
+     */
+    int choose(Economy economy);
+
+}
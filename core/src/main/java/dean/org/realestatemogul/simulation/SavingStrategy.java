@@ -0,0 +1,48 @@
+package dean.org.realestatemogul.simulation;
+
+import dean.org.realestatemogul.economy.Economy;
+
+/**
+ * Saves up for the first property the player doesn't own yet, as a player chasing the next building would.
+ * When saving would take too long at the current income, the best return on investment is bought instead
+ * to speed the saving up.
+ */
+public class SavingStrategy implements PurchaseStrategy {
+
+    private final double patience; // The longest the player will save for in seconds
+
+    /**
+     * Constructor for the strategy.
+     * @param patience The longest the player will save for in seconds.
+     */
+    public SavingStrategy(final double patience)
+    {
+        this.patience = patience;
+    }
+
+    @Override
+    public int choose(final Economy economy)
+    {
+        int target = -1;
+        for (int index = 0; index < economy.getBuildingCount() && target == -1; index++)
+        {
+            if(economy.getOwned(index) == 0)
+                target = index;
+        }
+        if(target == -1 || economy.canAfford(target))
+            return target == -1 ? GREEDY_ROI.choose(economy) : target;
+
+        final double income = economy.getIncomePerSecond().toDouble();
+        final double shortfall = economy.getPrice(target).toDouble() - economy.getMoney().toDouble();
+        if(income > 0 && shortfall / income <= patience)
+            return target;
+        return GREEDY_ROI.choose(economy);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "saving";
+    }
+
+}
@@ -0,0 +1,199 @@
+package dean.org.realestatemogul.text;
+
+import dean.org.realestatemogul.economy.Money;
+
+/**
+ * Formats numbers straight into character buffers so that text can be drawn every frame
+ * without creating any Strings or formatter objects.
+ */
+public final class NumberFormatter {
+
+    /**
+     * Values at or above this are shown with a compact suffix rather than every digit.
+     */
+    public static final long COMPACT_THRESHOLD = 1000000000L;
+
+    /**
+     * The longest text any of the format methods can produce.
+     */
+    public static final int MAX_LENGTH = 27;
+
+    private static final char[][] SUFFIXES = {
+            {}, {'K'}, {'M'}, {'B'}, {'T'}, {'Q', 'a'}, {'Q', 'i'},
+            {'S', 'x'}, {'S', 'p'}, {'O', 'c'}, {'N', 'o'}, {'D', 'c'}
+    };
+
+    private NumberFormatter()
+    {
+    }
+
+    /**
+     * Formats a number with every digit shown below {@link #COMPACT_THRESHOLD}, and with a compact suffix above it.
+     * @param value The number to be formatted.
+     * @param out The buffer to write the text into.
+     * @param offset The position in the buffer to start writing at.
+     * @return The number of characters written.
+     */
+    public static int format(final long value, final char[] out, final int offset)
+    {
+        if(value >= COMPACT_THRESHOLD || value <= -COMPACT_THRESHOLD)
+            return formatCompact(value, out, offset);
+        return formatGrouped(value, out, offset);
+    }
+
+    /**
+     * Formats an amount of money with every digit shown below {@link #COMPACT_THRESHOLD}, with a compact
+     * suffix above it, and in scientific notation once it runs past the largest suffix, such as 1.23e45.
+     * @param value The amount to be formatted.
+     * @param out The buffer to write the text into.
+     * @param offset The position in the buffer to start writing at.
+     * @return The number of characters written.
+     */
+    public static int format(final Money value, final char[] out, final int offset)
+    {
+        if(value.getExponent() == 0 && Math.abs(value.getMantissa()) < COMPACT_THRESHOLD)
+            return formatGrouped((long) value.getMantissa(), out, offset);
+
+        int position = offset;
+        if(value.signum() < 0)
+            out[position++] = '-';
+        final double log10 = value.log10();
+        final int magnitude = (int) Math.floor(log10);
+        final int suffix = magnitude / 3;
+        if(suffix < SUFFIXES.length)
+        {
+            position += formatSignificand(Math.pow(10, log10 - (suffix * 3)), out, position);
+            for (final char character : SUFFIXES[suffix])
+                out[position++] = character;
+        }
+        else
+        {
+            position += formatSignificand(Math.pow(10, log10 - magnitude), out, position);
+            out[position++] = 'e';
+            position += formatGrouped(magnitude, out, position);
+        }
+        return position - offset;
+    }
+
+    /**
+     * Formats a number by adding commas between each group of three digits, such as 1,234,567.
+     * @param value The number to be formatted.
+     * @param out The buffer to write the text into.
+     * @param offset The position in the buffer to start writing at.
+     * @return The number of characters written.
+     */
+    public static int formatGrouped(final long value, final char[] out, final int offset)
+    {
+        int position = offset;
+        if(value < 0)
+            out[position++] = '-';
+        final int digits = digitCount(value);
+        final int length = (position - offset) + digits + ((digits - 1) / 3);
+
+        // Work backwards from the end using negative values so Long.MIN_VALUE doesn't overflow
+        long remaining = value < 0 ? value : -value;
+        int end = offset + length;
+        for (int digit = 0; digit < digits; digit++)
+        {
+            if(digit > 0 && digit % 3 == 0)
+                out[--end] = ',';
+            out[--end] = (char) ('0' - (remaining % 10));
+            remaining /= 10;
+        }
+        return length;
+    }
+
+    /**
+     * Formats a number with three significant figures and a suffix, such as 1.23M or 45.6B.
+     * Numbers below one thousand are written as they are.
+     * @param value The number to be formatted.
+     * @param out The buffer to write the text into.
+     * @param offset The position in the buffer to start writing at.
+     * @return The number of characters written.
+     */
+    public static int formatCompact(final long value, final char[] out, final int offset)
+    {
+        if(value > -1000 && value < 1000)
+            return formatGrouped(value, out, offset);
+
+        int position = offset;
+        if(value < 0)
+            out[position++] = '-';
+
+        // Divide negative values so Long.MIN_VALUE doesn't overflow
+        final long negative = value < 0 ? value : -value;
+        int suffix = 0;
+        long divisor = 1;
+        while (negative / divisor <= -1000)
+        {
+            divisor *= 1000;
+            suffix++;
+        }
+        final long whole = -(negative / divisor);
+        final long remainder = -(negative % divisor);
+        final int decimals = whole < 10 ? 2 : (whole < 100 ? 1 : 0);
+
+        position += formatGrouped(whole, out, position);
+        if(decimals > 0)
+        {
+            out[position++] = '.';
+            long scale = divisor;
+            long fraction = remainder;
+            for (int decimal = 0; decimal < decimals; decimal++)
+            {
+                scale /= 10;
+                out[position++] = (char) ('0' + (fraction / scale));
+                fraction %= scale;
+            }
+        }
+        for (final char character : SUFFIXES[suffix])
+            out[position++] = character;
+        return position - offset;
+    }
+
+    /**
+     * Writes a positive number below one thousand with three significant figures.
+     * @param significand The number to be written.
+     * @param out The buffer to write the text into.
+     * @param offset The position in the buffer to start writing at.
+     * @return The number of characters written.
+     */
+    private static int formatSignificand(final double significand, final char[] out, final int offset)
+    {
+        final double clamped = Math.min(significand, 999.99);
+        final long whole = (long) clamped;
+        final int decimals = whole < 10 ? 2 : (whole < 100 ? 1 : 0);
+        int position = offset + formatGrouped(whole, out, offset);
+        if(decimals > 0)
+        {
+            out[position++] = '.';
+            double fraction = clamped - whole;
+            for (int decimal = 0; decimal < decimals; decimal++)
+            {
+                fraction *= 10;
+                final int digit = Math.min(9, (int) (fraction + 1e-9));
+                out[position++] = (char) ('0' + digit);
+                fraction -= digit;
+            }
+        }
+        return position - offset;
+    }
+
+    /**
+     * Counts the number of decimal digits in a number, ignoring its sign.
+     * @param value The number to count the digits of.
+     * @return The number of digits, at least one.
+     */
+    private static int digitCount(final long value)
+    {
+        long remaining = value < 0 ? value : -value;
+        int digits = 1;
+        while (remaining <= -10)
+        {
+            remaining /= 10;
+            digits++;
+        }
+        return digits;
+    }
+
+}
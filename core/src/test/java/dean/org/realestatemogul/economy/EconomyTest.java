@@ -0,0 +1,121 @@
+package dean.org.realestatemogul.economy;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import dean.org.realestatemogul.entity.BuildingCatalog;
+import dean.org.realestatemogul.persistence.SaveState;
+
+/**
+ * Tests that the income shown to the player matches what the properties pay out.
+ */
+public class EconomyTest {
+
+    @Test
+    public void incomeFollowsRentsAndBoosts()
+    {
+        final Economy economy = new Economy(BuildingCatalog.getDefault(), SEED);
+        final int[] owned = new int[economy.getBuildingCount()];
+        owned[0] = 10;
+        owned[2] = 3;
+        economy.restore(0, 0, owned);
+        assertTrue(economy.addBoost(2, 60 * SECOND));
+        for (int index = 0; index < 10; index++)
+            economy.update(SECOND);
+        assertTrue(economy.getMarket().getTicks() > 0);
+        assertEquals(expectedIncome(economy), economy.getIncomePerSecond().toDouble(), 1e-9);
+
+        economy.clearBoosts();
+        assertEquals(expectedIncome(economy), economy.getIncomePerSecond().toDouble(), 1e-9);
+    }
+
+    @Test
+    public void restoreCarriesOnWithThePeriodThatWasLeft()
+    {
+        final BuildingCatalog catalog = BuildingCatalog.getDefault();
+        final int castle = catalog.indexOf("castle");
+        final Economy saved = new Economy(catalog, SEED);
+        final int[] owned = new int[saved.getBuildingCount()];
+        owned[castle] = 1;
+        saved.restore(0, 0, owned);
+        saved.update(20 * SECOND);
+        assertEquals(10000, saved.getPayoutRemaining(castle));
+
+        final Economy loaded = new Economy(catalog, SEED);
+        final int[] remaining = new int[loaded.getBuildingCount()];
+        remaining[castle] = saved.getPayoutRemaining(castle);
+        loaded.restore(0, 0, owned, remaining);
+        loaded.update(10 * SECOND - Economy.TICK_LENGTH);
+        assertTrue(loaded.getMoney().isZero());
+        loaded.update(Economy.TICK_LENGTH);
+        assertFalse(loaded.getMoney().isZero());
+        assertEquals(0, loaded.getPayoutRemaining(catalog.indexOf("tent"))); // None owned
+    }
+
+    @Test
+    public void buyingPartWayThroughAPeriodPaysProRata()
+    {
+        final BuildingCatalog catalog = BuildingCatalog.getDefault();
+        final int castle = catalog.indexOf("castle");
+        final Economy economy = new Economy(catalog, SEED);
+        final int[] owned = new int[economy.getBuildingCount()];
+        owned[castle] = 1;
+        economy.restore(1e12, 0, owned);
+        economy.update(20 * SECOND);
+        final double before = economy.getMoney().toDouble();
+        final double price = economy.getPrice(castle).toDouble();
+        final double rent = economy.getMarket().getRentFactor(castle);
+        assertTrue(economy.purchase(castle));
+
+        // Two thirds of a period for the castle that was owned, and a new period starts for both
+        final double earned = catalog.getIncome(castle) * 20 * rent;
+        assertEquals(before - price + earned, economy.getMoney().toDouble(), 1e-3);
+        assertEquals(30000, economy.getPayoutRemaining(castle));
+    }
+
+    @Test
+    public void restoredMarketCarriesOnWhereItWas()
+    {
+        final BuildingCatalog catalog = BuildingCatalog.getDefault();
+        final Economy saved = new Economy(catalog, SEED);
+        saved.update(100 * SECOND);
+        final SaveState state = new SaveState(catalog);
+        saved.save(state);
+
+        final Economy loaded = new Economy(catalog, SEED + 1);
+        loaded.restore(state);
+        assertEquals(saved.getMarket().getTicks(), loaded.getMarket().getTicks());
+        assertEquals(saved.getMarket().getSeed(), loaded.getMarket().getSeed());
+        for (int step = 0; step < 2; step++)
+        {
+            for (int index = 0; index < catalog.getCount(); index++)
+            {
+                assertEquals(saved.getMarket().getDemand(index), loaded.getMarket().getDemand(index), 0);
+                assertEquals(saved.getMarket().getRentFactor(index), loaded.getMarket().getRentFactor(index), 0);
+                assertEquals(saved.getPrice(index), loaded.getPrice(index));
+            }
+            saved.update(50 * SECOND);
+            loaded.update(50 * SECOND);
+        }
+    }
+
+    /**
+     * Works out the income per second from the payout rules: owned times income times rent factor times boosts.
+     * @param economy The economy.
+     * @return The income per second.
+     */
+    private static double expectedIncome(final Economy economy)
+    {
+        double income = 0;
+        for (int index = 0; index < economy.getBuildingCount(); index++)
+            income += economy.getOwned(index) * economy.getCatalog().getIncome(index) * economy.getMarket().getRentFactor(index);
+        return income * economy.getMultiplier();
+    }
+
+    private static final long SECOND = 1000000000L;
+    private static final long SEED = 20180113L;
+
+}
@@ -0,0 +1,71 @@
+package dean.org.realestatemogul.economy;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the arithmetic of money on both sides of where the mantissa is scaled down, starting from zero.
+ */
+public class MoneyTest {
+
+    @Test
+    public void addToZeroIsNormalised()
+    {
+        final Money money = new Money().add(6e15);
+        assertEquals(6e14, money.getMantissa(), 0);
+        assertEquals(1, money.getExponent());
+        assertTrue(money.isAtLeast(new Money(5e15)));
+        assertFalse(new Money(5e15).isAtLeast(money));
+        assertEquals(6000000000000000L, money.toLong());
+
+        final Money other = new Money().add(new Money(6e15));
+        assertEquals(money, other);
+    }
+
+    @Test
+    public void arithmeticAcrossTheBoundary()
+    {
+        final double[] amounts = { 999999999999999.0, 1e15, 1e15 + 10, 2.5e15, 123456789012345678.0 };
+        for (final double amount : amounts)
+        {
+            final Money money = new Money().add(amount);
+            assertEquals(new Money(amount), money);
+            assertTrue(money.getMantissa() < 1e15);
+            assertEquals((double) (long) amount, money.toLong(), amount * 1e-14);
+            assertTrue(money.isAtLeast(new Money(amount * 0.999)));
+            assertFalse(money.isAtLeast(new Money(amount * 1.001)));
+
+            final Money less = new Money().subtract(new Money(amount));
+            assertEquals(-1, less.signum());
+            assertTrue(new Money().isAtLeast(less));
+            assertTrue(less.add(amount).isZero());
+        }
+    }
+
+    @Test
+    public void subtractBackBelowTheBoundary()
+    {
+        final Money money = new Money().add(1.5e15);
+        money.subtract(new Money(1e15));
+        assertEquals(0, money.getExponent());
+        assertEquals(5e14, money.getMantissa(), 1);
+        assertEquals(500000000000000L, money.toLong(), 1);
+        assertTrue(money.isAtLeast(new Money(4.99e14)));
+        assertFalse(money.isAtLeast(new Money(5.01e14)));
+    }
+
+    @Test
+    public void smallAmountsStayExact()
+    {
+        final Money money = new Money().add(100);
+        money.add(1150).subtract(new Money(250));
+        assertEquals(1000, money.toLong());
+        assertEquals(0, money.getExponent());
+        assertTrue(money.isAtLeast(new Money(1000)));
+        assertFalse(money.isAtLeast(new Money(1001)));
+    }
+
+}
@@ -0,0 +1,77 @@
+package dean.org.realestatemogul.economy;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that a market replays exactly from its seed, so saved games and simulations are reproducible.
+ */
+public class PropertyMarketTest {
+
+    @Test
+    public void sameSeedReplaysTheSameMarket()
+    {
+        final PropertyMarket first = run(SEED, TICKS);
+        final PropertyMarket second = run(SEED, TICKS);
+        assertArrayEquals(demands(first), demands(second), 0);
+        assertArrayEquals(rentFactors(first), rentFactors(second), 0);
+    }
+
+    @Test
+    public void differentSeedGivesADifferentMarket()
+    {
+        final PropertyMarket first = run(SEED, TICKS);
+        final PropertyMarket second = run(SEED + 1, TICKS);
+        assertFalse(Arrays.equals(demands(first), demands(second)));
+        assertFalse(Arrays.equals(rentFactors(first), rentFactors(second)));
+    }
+
+    @Test
+    public void marketMovesAndStaysWithinLimits()
+    {
+        final double[] rents = rentFactors(run(SEED, TICKS));
+        for (final double rent : rents)
+            assertTrue(rent >= 0.9 && rent <= 1.1);
+        assertFalse(Arrays.equals(rents, rentFactors(run(SEED, 0))));
+    }
+
+    /**
+     * Creates a market and runs it.
+     * @param seed The seed of the market.
+     * @param ticks The number of ticks to run it for.
+     * @return The market after running.
+     */
+    private static PropertyMarket run(final long seed, final int ticks)
+    {
+        final PropertyMarket market = new PropertyMarket(ENTRIES, seed);
+        for (int index = 0; index < ticks; index++)
+            market.tick();
+        return market;
+    }
+
+    private static double[] demands(final PropertyMarket market)
+    {
+        final double[] demands = new double[market.getSize()];
+        for (int index = 0; index < demands.length; index++)
+            demands[index] = market.getDemand(index);
+        return demands;
+    }
+
+    private static double[] rentFactors(final PropertyMarket market)
+    {
+        final double[] rents = new double[market.getSize()];
+        for (int index = 0; index < rents.length; index++)
+            rents[index] = market.getRentFactor(index);
+        return rents;
+    }
+
+    private static final int ENTRIES = 64;
+    private static final int TICKS = 1000;
+    private static final long SEED = 20180113L;
+
+}
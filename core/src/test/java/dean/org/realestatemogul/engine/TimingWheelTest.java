@@ -0,0 +1,157 @@
+package dean.org.realestatemogul.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the timing wheel on a virtual clock, the wheel's own tick count, checking that every timer
+ * fires on exactly the tick it's due, whichever wheel it was waiting in.
+ */
+public class TimingWheelTest {
+
+    /**
+     * Records the tag and tick of every timer that fires.
+     */
+    private static class Recorder implements TimingWheel.Listener {
+
+        private final TimingWheel wheel;
+        private final List<long[]> fired = new ArrayList<>();
+
+        Recorder(final TimingWheel wheel)
+        {
+            this.wheel = wheel;
+        }
+
+        @Override
+        public void onExpired(final int tag)
+        {
+            fired.add(new long[] { tag, wheel.getTime() });
+        }
+
+    }
+
+    @Test
+    public void firesInOrderAcrossCascadeBoundaries()
+    {
+        final long[] delays = { 4097, 1, 63, 4096, 64, 65, 4095, 127, 128, 262143, 262144, 262145, 8191, 8192 };
+        for (final long start : new long[] { 0, 37, 4000 })
+        {
+            for (final long jump : new long[] { 1, 7, 64, 1000, 1000000 })
+            {
+                final TimingWheel wheel = new TimingWheel(delays.length);
+                wheel.advance(start, new Recorder(wheel));
+                for (int index = 0; index < delays.length; index++)
+                    wheel.schedule(delays[index], index);
+                final Recorder recorder = new Recorder(wheel);
+                while (wheel.size() > 0)
+                    wheel.advance(jump, recorder);
+
+                assertEquals(delays.length, recorder.fired.size());
+                long last = 0;
+                for (final long[] fire : recorder.fired)
+                {
+                    assertEquals("Start " + start + " jump " + jump, start + delays[(int) fire[0]], fire[1]);
+                    assertTrue(fire[1] > last);
+                    last = fire[1];
+                }
+            }
+        }
+    }
+
+    @Test
+    public void firesTimersFromTheOverflowList()
+    {
+        final long top = 1L << 30; // Past the outermost wheel
+        final long[] delays = { top - 1, top, top + 1, 3 * top + 12345, 10 };
+        final TimingWheel wheel = new TimingWheel(delays.length);
+        wheel.advance(5, new Recorder(wheel));
+        for (int index = 0; index < delays.length; index++)
+            wheel.schedule(delays[index], index);
+        final Recorder recorder = new Recorder(wheel);
+        while (wheel.size() > 0)
+            wheel.advance(top / 3, recorder);
+
+        assertEquals(delays.length, recorder.fired.size());
+        final int[] order = { 4, 0, 1, 2, 3 };
+        for (int index = 0; index < order.length; index++)
+        {
+            assertEquals(order[index], recorder.fired.get(index)[0]);
+            assertEquals(5 + delays[order[index]], recorder.fired.get(index)[1]);
+        }
+    }
+
+    @Test
+    public void staleHandleCantCancelAReusedEntry()
+    {
+        final TimingWheel wheel = new TimingWheel(1);
+        final Recorder recorder = new Recorder(wheel);
+        final long first = wheel.schedule(10, 1);
+        assertTrue(wheel.cancel(first));
+        assertFalse(wheel.cancel(first));
+
+        final long second = wheel.schedule(20, 2); // Reuses the only entry
+        assertEquals((int) first, (int) second);
+        assertFalse(wheel.cancel(first));
+        assertEquals(-1, wheel.getRemaining(first));
+        assertEquals(20, wheel.getRemaining(second));
+
+        wheel.advance(20, recorder);
+        assertEquals(1, recorder.fired.size());
+        assertEquals(2, recorder.fired.get(0)[0]);
+        assertFalse(wheel.cancel(second));
+        assertFalse(wheel.cancel(TimingWheel.NONE));
+    }
+
+    @Test
+    public void listenerCanRescheduleDuringAnAdvance()
+    {
+        final TimingWheel wheel = new TimingWheel(2);
+        final List<Long> times = new ArrayList<>();
+        final TimingWheel.Listener repeating = new TimingWheel.Listener() {
+            @Override
+            public void onExpired(final int tag)
+            {
+                times.add(wheel.getTime());
+                if(times.size() < 100)
+                    wheel.schedule(tag, tag); // Each timer repeats on its own period
+            }
+        };
+        wheel.schedule(64, 64);
+        wheel.advance(100 * 64, repeating);
+        assertEquals(100, times.size());
+        for (int index = 0; index < times.size(); index++)
+            assertEquals((index + 1) * 64L, (long) times.get(index));
+
+        times.clear();
+        wheel.schedule(1, 1); // Rescheduled for the very next tick, which must still be reached in this advance
+        assertEquals(100, wheel.advance(1000, repeating));
+        assertEquals(6400 + 100L, (long) times.get(99));
+    }
+
+    @Test
+    public void listenerCanCancelATimerDueOnTheSameTick()
+    {
+        final TimingWheel wheel = new TimingWheel(2);
+        final long[] handles = new long[2];
+        final List<Integer> fired = new ArrayList<>();
+        handles[0] = wheel.schedule(64, 0);
+        handles[1] = wheel.schedule(64, 1);
+        wheel.advance(64, new TimingWheel.Listener() {
+            @Override
+            public void onExpired(final int tag)
+            {
+                fired.add(tag);
+                assertTrue(wheel.cancel(handles[1 - tag]));
+            }
+        });
+        assertEquals(1, fired.size());
+        assertEquals(0, wheel.size());
+    }
+
+}
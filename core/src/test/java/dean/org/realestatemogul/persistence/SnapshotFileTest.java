@@ -0,0 +1,249 @@
+package dean.org.realestatemogul.persistence;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import dean.org.realestatemogul.entity.BuildingCatalog;
+
+/**
+ * Tests that saves survive a round trip through a file, that damaged files are rejected
+ * and that files written by older versions still load.
+ */
+public class SnapshotFileTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final BuildingCatalog catalog = BuildingCatalog.getDefault();
+    private File file;
+    private SnapshotFile snapshot;
+
+    @Before
+    public void setUp()
+    {
+        file = new File(folder.getRoot(), "save.bin");
+        snapshot = new SnapshotFile(file);
+    }
+
+    @Test
+    public void roundTrip()
+    {
+        final SaveState saved = createState();
+        assertTrue(snapshot.write(saved));
+        assertTrue(snapshot.exists());
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+
+        final SaveState loaded = new SaveState(catalog);
+        assertTrue(new SnapshotFile(file).read(loaded));
+        assertEquals(saved.getMoneyMantissa(), loaded.getMoneyMantissa(), 0);
+        assertEquals(saved.getMoneyExponent(), loaded.getMoneyExponent());
+        assertEquals(saved.getSavedAt(), loaded.getSavedAt());
+        assertEquals(saved.getSavedRealtime(), loaded.getSavedRealtime());
+        assertArrayEquals(saved.getOwnedProperties(), loaded.getOwnedProperties());
+        assertArrayEquals(saved.getPayoutRemaining(), loaded.getPayoutRemaining());
+        assertTrue(loaded.hasMarket());
+        assertEquals(saved.getMarketSeed(), loaded.getMarketSeed());
+        assertEquals(saved.getMarketTicks(), loaded.getMarketTicks());
+        assertArrayEquals(saved.getMarketStates(), loaded.getMarketStates());
+        assertArrayEquals(saved.getMarketDemands(), loaded.getMarketDemands(), 0);
+    }
+
+    @Test
+    public void roundTripWithoutAMarket()
+    {
+        final SaveState saved = createState();
+        saved.clearMarket();
+        assertTrue(snapshot.write(saved));
+        final SaveState loaded = new SaveState(catalog);
+        assertTrue(snapshot.read(loaded));
+        assertFalse(loaded.hasMarket());
+        assertArrayEquals(saved.getOwnedProperties(), loaded.getOwnedProperties());
+    }
+
+    @Test
+    public void missingFileIsNotRead()
+    {
+        assertFalse(snapshot.exists());
+        assertFalse(snapshot.read(new SaveState(catalog)));
+    }
+
+    @Test
+    public void flippedByteFailsTheChecksum() throws IOException
+    {
+        assertTrue(snapshot.write(createState()));
+        final byte[] bytes = Files.readAllBytes(file.toPath());
+        for (int index = 0; index < bytes.length; index++)
+        {
+            bytes[index] ^= 0x01;
+            Files.write(file.toPath(), bytes);
+            assertFalse("Flipped byte " + index, snapshot.read(new SaveState(catalog)));
+            bytes[index] ^= 0x01;
+        }
+        Files.write(file.toPath(), bytes);
+        assertTrue(snapshot.read(new SaveState(catalog)));
+    }
+
+    @Test
+    public void truncatedFileIsRejected() throws IOException
+    {
+        assertTrue(snapshot.write(createState()));
+        final byte[] bytes = Files.readAllBytes(file.toPath());
+        for (int length = 0; length < bytes.length; length++)
+        {
+            Files.write(file.toPath(), Arrays.copyOf(bytes, length));
+            assertFalse("Truncated to " + length, snapshot.read(new SaveState(catalog)));
+        }
+    }
+
+    @Test
+    public void truncatedPropertiesAreRejectedEvenWithAValidChecksum() throws IOException
+    {
+        assertTrue(snapshot.write(createState()));
+        final byte[] bytes = Files.readAllBytes(file.toPath());
+        // Drop the last property and its checksum, then checksum what's left so only the count is wrong
+        final int keyLength = catalog.getKey(catalog.getCount() - 1).length();
+        final int length = bytes.length - 4 - (1 + keyLength + 24);
+        final ByteBuffer truncated = ByteBuffer.allocate(length + 4);
+        truncated.put(bytes, 0, length);
+        truncated.putInt(checksum(truncated.array(), length));
+        Files.write(file.toPath(), truncated.array());
+        assertFalse(snapshot.read(new SaveState(catalog)));
+    }
+
+    @Test
+    public void readsVersion1() throws IOException
+    {
+        final int[] owned = { 3, 2, 1, 0, 5, 4 };
+        final ByteBuffer data = ByteBuffer.allocate(40 + owned.length * 4 + 4);
+        data.putInt(SnapshotFile.MAGIC);
+        data.putInt(1);
+        data.putInt(owned.length);
+        data.putDouble(2.5);
+        data.putInt(7);
+        data.putLong(1515801600000L);
+        data.putLong(123456L);
+        for (final int amount : owned)
+            data.putInt(amount);
+        data.putInt(checksum(data.array(), data.position()));
+        Files.write(file.toPath(), data.array());
+
+        final SaveState loaded = new SaveState(catalog);
+        assertTrue(snapshot.read(loaded));
+        assertEquals(2.5, loaded.getMoneyMantissa(), 0);
+        assertEquals(7, loaded.getMoneyExponent());
+        assertEquals(1515801600000L, loaded.getSavedAt());
+        assertEquals(123456L, loaded.getSavedRealtime());
+        final String[] keys = { "tent", "caravan", "flat", "house", "mansion", "castle" };
+        for (int index = 0; index < keys.length; index++)
+            assertEquals(keys[index], owned[index], loaded.getOwnedProperties()[catalog.indexOf(keys[index])]);
+    }
+
+    @Test
+    public void readsVersion2() throws IOException
+    {
+        final String[] keys = { "castle", "tent" };
+        final int[] owned = { 2, 9 };
+        final ByteBuffer data = ByteBuffer.allocate(256);
+        data.putInt(SnapshotFile.MAGIC);
+        data.putInt(2);
+        data.putInt(keys.length);
+        data.putDouble(9.75);
+        data.putInt(3);
+        data.putLong(1515801600000L);
+        data.putLong(42L);
+        for (int index = 0; index < keys.length; index++)
+        {
+            data.put((byte) keys[index].length());
+            data.put(keys[index].getBytes("UTF-8"));
+            data.putInt(owned[index]);
+        }
+        data.putInt(checksum(data.array(), data.position()));
+        Files.write(file.toPath(), Arrays.copyOf(data.array(), data.position()));
+
+        final SaveState loaded = new SaveState(catalog);
+        Arrays.fill(loaded.getPayoutRemaining(), 99);
+        assertTrue(snapshot.read(loaded));
+        assertEquals(9.75, loaded.getMoneyMantissa(), 0);
+        assertEquals(3, loaded.getMoneyExponent());
+        for (int index = 0; index < keys.length; index++)
+            assertEquals(owned[index], loaded.getOwnedProperties()[catalog.indexOf(keys[index])]);
+        assertEquals(0, loaded.getOwnedProperties()[catalog.indexOf("flat")]);
+        assertArrayEquals(new int[catalog.getCount()], loaded.getPayoutRemaining());
+        assertFalse(loaded.hasMarket());
+    }
+
+    @Test
+    public void readsVersion3() throws IOException
+    {
+        final ByteBuffer data = ByteBuffer.allocate(256);
+        data.putInt(SnapshotFile.MAGIC);
+        data.putInt(3);
+        data.putInt(1);
+        data.putDouble(1.5);
+        data.putInt(0);
+        data.putLong(1515801600000L);
+        data.putLong(42L);
+        data.put((byte) 4);
+        data.put("flat".getBytes("UTF-8"));
+        data.putInt(6);
+        data.putInt(1500);
+        data.putInt(checksum(data.array(), data.position()));
+        Files.write(file.toPath(), Arrays.copyOf(data.array(), data.position()));
+
+        final SaveState loaded = new SaveState(catalog);
+        loaded.setMarket(1, 1);
+        assertTrue(snapshot.read(loaded));
+        assertEquals(6, loaded.getOwnedProperties()[catalog.indexOf("flat")]);
+        assertEquals(1500, loaded.getPayoutRemaining()[catalog.indexOf("flat")]);
+        assertFalse(loaded.hasMarket());
+    }
+
+    /**
+     * Creates a snapshot with money, times and some of each property owned.
+     * @return The snapshot.
+     */
+    private SaveState createState()
+    {
+        final SaveState state = new SaveState(catalog);
+        state.setMoney(1.25, 42);
+        state.setSavedAt(1515801600000L, 987654321L);
+        final int[] owned = state.getOwnedProperties();
+        for (int index = 0; index < owned.length; index++)
+        {
+            owned[index] = index == 1 ? 0 : index * 7 + 1;
+            state.getPayoutRemaining()[index] = owned[index] == 0 ? 0 : index * 1000 + 250;
+            state.getMarketStates()[index] = 0x123456789L * (index + 1);
+            state.getMarketDemands()[index] = (index - 2) * 0.1;
+        }
+        state.setMarket(-987654321L, 3600);
+        return state;
+    }
+
+    /**
+     * Works out the checksum a save file stores after its contents.
+     * @param bytes The contents.
+     * @param length The number of bytes the checksum covers.
+     * @return The checksum.
+     */
+    private static int checksum(final byte[] bytes, final int length)
+    {
+        final CRC32 crc = new CRC32();
+        crc.update(bytes, 0, length);
+        return (int) crc.getValue();
+    }
+
+}
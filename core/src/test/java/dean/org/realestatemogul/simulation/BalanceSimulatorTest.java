@@ -0,0 +1,83 @@
+package dean.org.realestatemogul.simulation;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import dean.org.realestatemogul.entity.BuildingCatalog;
+import dean.org.realestatemogul.profile.Histogram;
+
+/**
+ * Tests that a simulation is reproduced exactly from its seed, however many threads it's split between.
+ */
+public class BalanceSimulatorTest {
+
+    private final BalanceSimulator simulator = new BalanceSimulator(BuildingCatalog.getDefault(), PurchaseStrategy.GREEDY_ROI,
+            HOURS * 3600 * SECOND, 30 * SECOND, 2);
+
+    @Test
+    public void sameSeedGivesTheSameResultOnAnyNumberOfThreads()
+    {
+        final BalanceSimulator.Result single = run(SEED, 1);
+        final BalanceSimulator.Result parallel = run(SEED, 4);
+        assertEquals(single.getRuns(), parallel.getRuns());
+        for (int index = 0; index < BuildingCatalog.getDefault().getCount(); index++)
+        {
+            final Histogram expected = single.getMilestone(index);
+            final Histogram actual = parallel.getMilestone(index);
+            assertEquals(expected.getTotalCount(), actual.getTotalCount());
+            assertEquals(expected.getMin(), actual.getMin());
+            assertEquals(expected.getMax(), actual.getMax());
+            assertEquals(expected.getMean(), actual.getMean(), 0);
+        }
+        assertEquals(report(single), report(parallel));
+    }
+
+    @Test
+    public void eachRunCanBeReproducedOnItsOwn()
+    {
+        final int milestones = BuildingCatalog.getDefault().getCount();
+        final long[] first = new long[milestones];
+        final long[] second = new long[milestones];
+        simulator.simulate(SEED, 5, first, 0);
+        simulator.simulate(SEED, 5, second, 0);
+        for (int index = 0; index < milestones; index++)
+            assertEquals(first[index], second[index]);
+    }
+
+    @Test
+    public void differentSeedGivesADifferentResult()
+    {
+        assertNotEquals(report(run(SEED, 2)), report(run(SEED + 1, 2)));
+    }
+
+    /**
+     * Runs the simulation on a pool of its own.
+     * @param seed The seed of the simulation.
+     * @param threads The parallelism of the pool.
+     * @return The result.
+     */
+    private BalanceSimulator.Result run(final long seed, final int threads)
+    {
+        final ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            return simulator.run(seed, RUNS, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static String report(final BalanceSimulator.Result result)
+    {
+        return result.report(new StringBuilder()).toString();
+    }
+
+    private static final long SECOND = 1000000000L;
+    private static final long HOURS = 4;
+    private static final int RUNS = 100; // Enough to be split between threads several times
+    private static final long SEED = 7;
+
+}
@@ -0,0 +1,112 @@
+package dean.org.realestatemogul.text;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import dean.org.realestatemogul.economy.Money;
+
+/**
+ * Tests the text numbers and amounts of money are formatted to, and that it's written into the caller's buffer.
+ */
+public class NumberFormatterTest {
+
+    private final char[] buffer = new char[NumberFormatter.MAX_LENGTH];
+
+    @Test
+    public void groupsDigitsInThrees()
+    {
+        assertEquals("0", format(0));
+        assertEquals("999", format(999));
+        assertEquals("1,000", format(1000));
+        assertEquals("999,999", format(999999));
+        assertEquals("1,000,000", format(1000000));
+        assertEquals("999,999,999", format(NumberFormatter.COMPACT_THRESHOLD - 1));
+    }
+
+    @Test
+    public void compactSuffixesTruncateRatherThanRoundUp()
+    {
+        assertEquals("1.00B", format(NumberFormatter.COMPACT_THRESHOLD));
+        assertEquals("999B", format(999500000000L)); // 9.995e11 stays below the next suffix
+        assertEquals("999B", format(999999999999L));
+        assertEquals("1.00T", format(1000000000000L));
+        assertEquals("999K", compact(999999));
+        assertEquals("1.00M", compact(1000000));
+        assertEquals("9.99M", compact(9999999));
+        assertEquals("10.0M", compact(10000000));
+
+        assertEquals("999B", format(new Money(9.995e11)));
+        assertEquals("1.00T", format(new Money(1e12)));
+        assertEquals("999,999", format(new Money(999999)));
+    }
+
+    @Test
+    public void negativeNumbers()
+    {
+        assertEquals("-1", format(-1));
+        assertEquals("-1,000", format(-1000));
+        assertEquals("-999,999,999", format(-(NumberFormatter.COMPACT_THRESHOLD - 1)));
+        assertEquals("-1.50B", format(-1500000000L));
+        assertEquals("-999K", compact(-999999));
+        assertEquals("-1,234", format(new Money(-1234)));
+        assertEquals("-2.50Qa", format(new Money(-2.5e15)));
+    }
+
+    @Test
+    public void extremesOfALong()
+    {
+        assertEquals("-9.22Qi", format(Long.MIN_VALUE));
+        assertEquals("9.22Qi", format(Long.MAX_VALUE));
+        final int length = NumberFormatter.formatGrouped(Long.MIN_VALUE, buffer, 0);
+        assertEquals("-9,223,372,036,854,775,808", new String(buffer, 0, length));
+        assertTrue(length <= NumberFormatter.MAX_LENGTH);
+    }
+
+    @Test
+    public void moneyPastTheLargestSuffixIsScientific()
+    {
+        assertEquals("1.00e36", format(new Money(1e36)));
+        assertEquals("1.23e45", format(new Money(1.23e45)));
+        assertEquals("999Dc", format(new Money(9.99e35)));
+        assertEquals("-1.00e36", format(new Money(-1e36)));
+        final Money huge = new Money().setLog10(1e6);
+        final int length = NumberFormatter.format(huge, buffer, 0);
+        assertEquals("1.00e1,000,000", new String(buffer, 0, length));
+        assertTrue(length <= NumberFormatter.MAX_LENGTH);
+    }
+
+    @Test
+    public void writesIntoTheCallersBufferAtTheOffset()
+    {
+        final char[] out = new char[4 + NumberFormatter.MAX_LENGTH];
+        "Own ".getChars(0, 4, out, 0);
+        int length = NumberFormatter.format(1234567, out, 4);
+        assertEquals("Own 1,234,567", new String(out, 0, 4 + length));
+
+        // A shorter number reuses the same buffer, only the returned length is meaningful
+        length = NumberFormatter.format(42, out, 4);
+        assertEquals(2, length);
+        assertEquals("Own 42", new String(out, 0, 4 + length));
+
+        length = NumberFormatter.format(new Money(1e36), out, 4);
+        assertEquals("Own 1.00e36", new String(out, 0, 4 + length));
+    }
+
+    private String format(final long value)
+    {
+        return new String(buffer, 0, NumberFormatter.format(value, buffer, 0));
+    }
+
+    private String compact(final long value)
+    {
+        return new String(buffer, 0, NumberFormatter.formatCompact(value, buffer, 0));
+    }
+
+    private String format(final Money value)
+    {
+        return new String(buffer, 0, NumberFormatter.format(value, buffer, 0));
+    }
+
+}
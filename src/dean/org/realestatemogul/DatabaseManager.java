@@ -1,16 +1,20 @@
 package dean.org.realestatemogul;
 
-import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 
+import dean.org.realestatemogul.entity.BuildingCatalog;
+import dean.org.realestatemogul.persistence.SaveSource;
+import dean.org.realestatemogul.persistence.SaveState;
+
 /**
  * Created by Dean on 14/01/2018.
+ * Saves are written to the save file now, the database is only read once to migrate the save of an older version.
  */
 
-public class DatabaseManager extends SQLiteOpenHelper {
+public class DatabaseManager extends SQLiteOpenHelper implements SaveSource {
 
     /**
      * Constructor for the database manager class
@@ -22,7 +26,8 @@ public class DatabaseManager extends SQLiteOpenHelper {
     }
 
     /**
-     * Creates the database table for saving player details
+     * Creates the database tables for saving player details, the amount of each property owned is
+     * kept in its own table keyed by the property so that new properties don't need a new column
      * @param database The SQLiteDatabase instance for our database
      */
     @Override
@@ -31,17 +36,18 @@ public class DatabaseManager extends SQLiteOpenHelper {
         database.execSQL("CREATE TABLE " + TABLE_NAME + " (" +
                 COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
                 COLUMN_MONEY + " INTEGER," +
-                COLUMN_TENT + " INTEGER," +
-                COLUMN_CARAVAN + " INTEGER," +
-                COLUMN_FLAT + " INTEGER," +
-                COLUMN_HOUSE + " INTEGER," +
-                COLUMN_MANSION + " INTEGER," +
-                COLUMN_CASTLE + " INTEGER)");
+                COLUMN_MONEY_MANTISSA + " REAL," +
+                COLUMN_MONEY_EXPONENT + " INTEGER," +
+                COLUMN_SAVED_AT + " INTEGER," +
+                COLUMN_SAVED_REALTIME + " INTEGER)");
+        createPropertiesTable(database);
     }
 
     /**
-     * Deletes the old database and creates a new one based on a new version number
-     * Version changing is currently unused in this application as it's not needed
+     * Upgrades the database to a new version number one version at a time, keeping the players save.
+     * Version 2 stores money as a mantissa and exponent so that it can grow past the range of an integer.
+     * Version 3 stores when the game was saved so that time away can be paid for.
+     * Version 4 moves the amount of each property owned out of the players row and into a table keyed by property.
      * @param database The SQLiteDatabase instance of the current database
      * @param oldVersion The old version of the database
      * @param newVersion The new version of the database.
@@ -49,79 +55,104 @@ public class DatabaseManager extends SQLiteOpenHelper {
     @Override
     public void onUpgrade(final SQLiteDatabase database, final int oldVersion, final int newVersion)
     {
-        database.execSQL("DROP TABLE IF EXISTS " + TABLE_NAME);
-        onCreate(database);
+        if(oldVersion < 2)
+        {
+            database.execSQL("ALTER TABLE " + TABLE_NAME + " ADD COLUMN " + COLUMN_MONEY_MANTISSA + " REAL");
+            database.execSQL("ALTER TABLE " + TABLE_NAME + " ADD COLUMN " + COLUMN_MONEY_EXPONENT + " INTEGER");
+            database.execSQL("UPDATE " + TABLE_NAME + " SET " + COLUMN_MONEY_MANTISSA + " = " + COLUMN_MONEY + ", " +
+                    COLUMN_MONEY_EXPONENT + " = 0");
+        }
+        if(oldVersion < 3)
+        {
+            database.execSQL("ALTER TABLE " + TABLE_NAME + " ADD COLUMN " + COLUMN_SAVED_AT + " INTEGER DEFAULT 0");
+            database.execSQL("ALTER TABLE " + TABLE_NAME + " ADD COLUMN " + COLUMN_SAVED_REALTIME + " INTEGER DEFAULT 0");
+        }
+        if(oldVersion < 4)
+        {
+            createPropertiesTable(database);
+            for (int index = 0; index < LEGACY_PROPERTY_COLUMNS.length; index++)
+                database.execSQL("INSERT OR REPLACE INTO " + PROPERTIES_TABLE_NAME + " (" + COLUMN_KEY + ", " + COLUMN_OWNED + ") " +
+                        "SELECT '" + LEGACY_PROPERTY_KEYS[index] + "', " + LEGACY_PROPERTY_COLUMNS[index] +
+                        " FROM " + TABLE_NAME + " WHERE " + COLUMN_ID + " = 0 AND " + LEGACY_PROPERTY_COLUMNS[index] + " > 0");
+        }
     }
 
     /**
-     * Inserts an entry into the database.
-     * @param data The data to fill the columns of the database
-     * @return true if the row could be added into the database
+     * Creates the table holding the amount of each property owned
+     * @param database The SQLiteDatabase instance for our database
      */
-    public boolean insertEntry(final int... data)
+    private void createPropertiesTable(final SQLiteDatabase database)
     {
-        if(data.length != 7)
-            return false;
-        final SQLiteDatabase database = this.getWritableDatabase();
-        final ContentValues values = new ContentValues();
-        values.put(COLUMN_ID, 0);
-        values.put(COLUMN_MONEY, data[0]);
-        values.put(COLUMN_TENT, data[1]);
-        values.put(COLUMN_CARAVAN, data[2]);
-        values.put(COLUMN_FLAT, data[3]);
-        values.put(COLUMN_HOUSE, data[4]);
-        values.put(COLUMN_MANSION, data[5]);
-        values.put(COLUMN_CASTLE, data[6]);
-        return database.insert(TABLE_NAME, null, values) != -1;
+        database.execSQL("CREATE TABLE " + PROPERTIES_TABLE_NAME + " (" +
+                COLUMN_KEY + " TEXT PRIMARY KEY," +
+                COLUMN_OWNED + " INTEGER)");
     }
 
     /**
-     * Updates an entry in the database, as player data is a single entry
-     * the ID column is hardcoded to be 0.
-     * @param data The data to update the row with.
-     * @return true if the row could be updated
+     * Reads the players save, properties that aren't in the catalog any more are ignored
+     * @param out The snapshot to fill in
+     * @return true if there was a save to read
      */
-    public boolean updateEntry(final int... data)
+    @Override
+    public boolean read(final SaveState out)
     {
-        if(data.length != 7)
-            return false;
-        final SQLiteDatabase database = this.getWritableDatabase();
-        final ContentValues values = new ContentValues();
-        values.put(COLUMN_ID, 0);
-        values.put(COLUMN_MONEY, data[0]);
-        values.put(COLUMN_TENT, data[1]);
-        values.put(COLUMN_CARAVAN, data[2]);
-        values.put(COLUMN_FLAT, data[3]);
-        values.put(COLUMN_HOUSE, data[4]);
-        values.put(COLUMN_MANSION, data[5]);
-        values.put(COLUMN_CASTLE, data[6]);
-        return database.update(TABLE_NAME, values, "ID = ?", new String[] { "0" }) != -1;
-    }
+        final SQLiteDatabase database = getReadableDatabase();
+        final Cursor player = database.rawQuery("SELECT " + COLUMN_MONEY_MANTISSA + ", " + COLUMN_MONEY_EXPONENT + ", " +
+                COLUMN_SAVED_AT + ", " + COLUMN_SAVED_REALTIME + " FROM " + TABLE_NAME +
+                " WHERE " + COLUMN_ID + " = 0", null);
+        try {
+            if(!player.moveToFirst())
+                return false;
+            out.setMoney(player.getDouble(0), player.getInt(1));
+            out.setSavedAt(player.getLong(2), player.getLong(3));
+            out.clearMarket(); // Saves in the database are from before the market existed
+        } finally {
+            player.close();
+        }
 
-    /**
-     * Gets all entries from the database
-     * @return The result set in the form of a Cursor object
-     */
-    public Cursor getAllEntries()
-    {
-        final SQLiteDatabase database = this.getWritableDatabase();
-        final Cursor results = database.rawQuery("SELECT * FROM " + TABLE_NAME, null);
-        return results;
+        final BuildingCatalog catalog = out.getCatalog();
+        final int[] owned = out.getOwnedProperties();
+        final int[] remaining = out.getPayoutRemaining(); // Not stored in the database, so every property starts a whole period
+        final Cursor properties = database.rawQuery("SELECT " + COLUMN_KEY + ", " + COLUMN_OWNED +
+                " FROM " + PROPERTIES_TABLE_NAME, null);
+        try {
+            for (int index = 0; index < owned.length; index++)
+            {
+                owned[index] = 0;
+                remaining[index] = 0;
+            }
+            while (properties.moveToNext())
+            {
+                final int index = catalog.indexOf(properties.getString(0));
+                if(index != -1)
+                    owned[index] = properties.getInt(1);
+            }
+        } finally {
+            properties.close();
+        }
+        return true;
     }
 
     /**
      * Database information such as column names and database name.
      */
     public static final String DATABASE_NAME = "GameSave.db";
-    public static final int DATABASE_VERSION = 1;
+    public static final int DATABASE_VERSION = 4;
     public static final String TABLE_NAME = "player_save";
+    public static final String PROPERTIES_TABLE_NAME = "player_properties";
     public static final String COLUMN_ID = "ID";
     public static final String COLUMN_MONEY = "MONEY";
-    public static final String COLUMN_TENT = "TENTS";
-    public static final String COLUMN_CARAVAN = "CARAVANS";
-    public static final String COLUMN_FLAT = "FLATS";
-    public static final String COLUMN_HOUSE = "HOUSES";
-    public static final String COLUMN_MANSION = "MANSIONS";
-    public static final String COLUMN_CASTLE = "CASTLES";
+    public static final String COLUMN_MONEY_MANTISSA = "MONEY_MANTISSA";
+    public static final String COLUMN_MONEY_EXPONENT = "MONEY_EXPONENT";
+    public static final String COLUMN_SAVED_AT = "SAVED_AT";
+    public static final String COLUMN_SAVED_REALTIME = "SAVED_REALTIME";
+    public static final String COLUMN_KEY = "KEY";
+    public static final String COLUMN_OWNED = "OWNED";
+
+    /**
+     * The columns that held the amount of each property owned before version 4, and the keys they moved to.
+     */
+    private static final String[] LEGACY_PROPERTY_COLUMNS = { "TENTS", "CARAVANS", "FLATS", "HOUSES", "MANSIONS", "CASTLES" };
+    private static final String[] LEGACY_PROPERTY_KEYS = { "tent", "caravan", "flat", "house", "mansion", "castle" };
 
 }
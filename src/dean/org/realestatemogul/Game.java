@@ -1,218 +1,704 @@
 package dean.org.realestatemogul;
 
 import android.content.Context;
-import android.database.Cursor;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Paint;
 import android.graphics.Rect;
+import android.os.SystemClock;
 import android.util.Log;
 
-import java.text.DecimalFormat;
+import java.util.Arrays;
 
-import dean.org.realestatemogul.entity.Building;
+import dean.org.realestatemogul.asset.BitmapLoader;
+import dean.org.realestatemogul.asset.BuildingIcons;
+import dean.org.realestatemogul.asset.SpriteAtlas;
+import dean.org.realestatemogul.economy.BuyMode;
+import dean.org.realestatemogul.economy.Economy;
+import dean.org.realestatemogul.economy.Money;
+import dean.org.realestatemogul.economy.OfflineProgress;
+import dean.org.realestatemogul.engine.TapLimiter;
+import dean.org.realestatemogul.entity.BuildingCatalog;
+import dean.org.realestatemogul.layout.ScrollList;
+import dean.org.realestatemogul.persistence.SaveState;
+import dean.org.realestatemogul.persistence.SaveWriter;
+import dean.org.realestatemogul.render.NumberLabel;
+import dean.org.realestatemogul.render.StaticLayer;
 
 /**
  * Created by Dean on 13/01/2018.
  */
 
 /**
- * Class that handles the actual Game
+ * Class that handles the actual Game, drawing the economy and passing the players presses on to it
  */
 public class Game {
 
     private Context context; // Context instance for use with getting resources
 
-    private long money; // The players money
-    private int[] ownedProperties = new int[6]; // Array holding amount of properties of each type the player owns
-    private boolean coinPressed = false; // Whether or not the coin has been pressed, used to display different image if so
-    private long lastPayment = 0; // A timer to ensure that the player gets paid every second (game runs at 50 frames per second)
+    private final Economy economy = new Economy(BuildingCatalog.getDefault(), System.currentTimeMillis()); // The players money and properties
+    private long marketTicks = 0; // The market's tick count when prices were last drawn
+    private final BuildingCatalog catalog = economy.getCatalog(); // The properties that can be bought
+    private int coinPointers = 0; // A bit for each finger holding the coin down, used to display a different image while any are
+    private final int[] pendingTaps = new int[MAX_POINTERS]; // Presses of the coin by each finger since the last step, credited together once per step
+    private final TapLimiter[] tapLimiters = new TapLimiter[MAX_POINTERS]; // Stops auto clickers earning faster than a person can tap, one per finger so several fingers don't share one limit
+    private double maxTapRate = DEFAULT_TAP_RATE; // The most presses of the coin per second by each finger that are counted over time
+    private int tapBurst = DEFAULT_TAP_BURST; // The most presses of the coin by each finger counted at once
+    private TapLimiter totalTapLimiter = new TapLimiter(DEFAULT_TAP_RATE * MAX_TAPPING_FINGERS, DEFAULT_TAP_BURST * MAX_TAPPING_FINGERS); // Caps every finger together, so cycling through finger ids can't multiply the limit
+
+    private final OfflineProgress offlineProgress = new OfflineProgress(OfflineProgress.DEFAULT_CAP); // Works out earnings while the game was closed
+    private String[] offlineSummary; // Lines describing what was earned while away, null when not being shown
+    private long offlineSummaryRemaining = 0; // Simulated time left before the summary of earnings while away is hidden
+    private long pausedAt = 0; // The wall clock time the game was paused in milliseconds, 0 if it's running
+    private long pausedRealtime = 0; // The time since the device booted when the game was paused in milliseconds
+
+    private final SaveState saveState = new SaveState(catalog); // Reused snapshot of the players data for saving and loading
+    private SaveWriter saveWriter; // Writes automatic saves in the background, null if the game isn't saved automatically
+    private long autosaveTimer = 0; // Simulated time since the game was last saved automatically
+
+    private final Rect dirty = new Rect(); // The region of the game that has changed since it was last rendered
+    private final ScrollList propertyList; // Scrolls the property list and works out which rows are on screen
+    private int listPointer = -1; // The finger scrolling the property list, -1 if the list isn't being pressed
+    private int pressedRow = -1; // The row a press on the property list started on, -1 if the list isn't being pressed
+    private int pressedX = 0; // Where the press on the property list started
+    private int pressedY = 0;
 
     /**
      * Constructor for creating the Game class.
      * @param context The context passed through to this class, for use with getting resources.
+     * @param bitmapLoader Decodes the game's images within the bitmap budget.
      */
-    public Game(final Context context)
+    public Game(final Context context, final BitmapLoader bitmapLoader)
     {
         this.context = context;
+        this.bitmapLoader = bitmapLoader;
+        propertyList = new ScrollList(LIST_BOUNDS.top, LIST_BOUNDS.height(), propertyHeight, catalog.getCount());
+        createRows(propertyList.getMaxVisibleRows());
         loadAssets();
+        invalidate();
     }
 
     /**
-     * Method that is called every iteration of the game loop
+     * Method that is called for every fixed step of the game loop
      * from the GameView class. Used to update the status of the game.
+     * @param step The length of the step in nanoseconds.
      */
-    public void process()
+    public void update(final long step)
     {
-        if((System.currentTimeMillis() - lastPayment) >= 1000)
+        if(offlineSummary != null)
+        {
+            offlineSummaryRemaining -= step;
+            if(offlineSummaryRemaining <= 0)
+                hideOfflineSummary();
+        }
+        final int taps = creditTaps(step);
+        if(taps > 0)
+            economy.earn(taps * TAP_VALUE);
+        if(economy.update(step) || taps > 0)
+            moneyChanged();
+        if(economy.getMarket().getTicks() != marketTicks)
+        {
+            marketTicks = economy.getMarket().getTicks();
+            dirty.union(LIST_BOUNDS); // Every price on screen has moved
+            moneyChanged();
+        }
+        if(propertyList.update(step))
+        {
+            dirty.union(LIST_BOUNDS);
+            moneyChanged();
+        }
+        if(saveWriter != null)
         {
-            for (int index = 0; index < ownedProperties.length; index++)
+            autosaveTimer += step;
+            if(autosaveTimer >= AUTOSAVE_PERIOD)
             {
-                if(ownedProperties[index] < 1)
-                    continue;
-                money += (ownedProperties[index] * Building.values()[index].getIncome());
+                autosaveTimer = 0;
+                save(saveWriter);
             }
-            lastPayment = System.currentTimeMillis();
         }
     }
 
     /**
      * Method for rendering the game to the underlying Canvas object.
+     * The canvas should be clipped to the dirty region, which is cleared once rendering is done.
+     * Only the rows of the property list that are on screen are drawn.
      * @param canvas The canvas that the game information and assets should be rendered onto.
      * @param paint The paint object that is used for rendering, such as setting colours and font sizes.
+     * @param interpolation How far between simulation steps the frame is, from 0 to 1, used to scroll the list smoothly.
      */
-    public void render(final Canvas canvas, final Paint paint)
+    public void render(final Canvas canvas, final Paint paint, final float interpolation)
     {
         canvas.drawBitmap(background, 0, 0, paint);
-        canvas.drawBitmap(coinPressed ? coinDown : coin, 349, 1365, paint);
+        atlas.draw(canvas, coinPointers != 0 ? R.drawable.coinpressed : R.drawable.coin, 349, 1365, paint);
         paint.setTextSize(30f);
-        final String wealthText = "Total wealth: £" + formatNumber((int) money);
-        final String incomeText = "Income per second: £" + formatNumber(getIncomePerSecond());
-        canvas.drawText(wealthText, 100, 272, paint);
-        canvas.drawText(incomeText, 800 - paint.measureText(incomeText), 272, paint);
+        final BuyMode buyMode = economy.getBuyMode();
+        wealthLabel.setValue(economy.getMoney());
+        incomeLabel.setValue(economy.getIncomePerSecond());
+        wealthLabel.draw(canvas, 100, 272, paint);
+        incomeLabel.draw(canvas, 800 - incomeLabel.getWidth(paint), 272, paint);
+
+        if(buyModeText == null)
+            measureText(paint);
+        canvas.drawText(buyModeText[buyMode.ordinal()], BUY_MODE_BOUNDS.right - buyModeWidths[buyMode.ordinal()], BUY_MODE_BOUNDS.bottom - 10, paint);
 
-        for (int index = 0; index < Building.values().length; index++)
+        final float offset = propertyList.getOffset(interpolation);
+        final int last = propertyList.getLastVisible(offset);
+        canvas.save();
+        canvas.clipRect(LIST_BOUNDS);
+        for (int index = propertyList.getFirstVisible(offset); index <= last; index++)
         {
-            final Building building = Building.values()[index];
-            int baseX = propertyOffsetX;
-            int baseY = propertyOffsetY + (propertyHeight * index);
-            paint.setTextSize(30f);
-            canvas.drawText(building.getName(), (baseX + (100 - (paint.measureText(building.getName()) / 2))), baseY + 50, paint);
-            canvas.drawBitmap(BitmapFactory.decodeResource(context.getResources(), building.getResourceId()), baseX + 68, baseY + 65, paint);
-            canvas.drawText("£" + formatNumber(building.getIncome()) + "/s", (baseX + (100 - paint.measureText("£" + formatNumber(building.getIncome()) + "/s") / 2)), baseY + 160, paint);
-            canvas.drawText(building.getDescription(), (baseX + (350 - paint.measureText(building.getDescription()) / 2)), baseY + 100, paint);
+            final int row = bindRow(index, paint);
+            final int baseX = propertyOffsetX;
+            final int baseY = propertyList.getRowTop(index, offset);
+            rowLayer.draw(canvas, row, baseX, baseY, paint); // Name, icon, income and description
 
             paint.setTextSize(20f);
-            canvas.drawText("Price: £" + formatNumber(building.getCost(ownedProperties[index])), baseX + 565, baseY + 75, paint);
-            canvas.drawText("Owned: " + formatNumber(ownedProperties[index]), baseX + 565, baseY + 115, paint);
-            canvas.drawBitmap(money >= building.getCost(ownedProperties[index]) ?
-                              buyOver : buyUnder, baseX + 750, baseY + 60, paint);
+            priceLabels[row].setValue(economy.getPrice(index));
+            priceLabels[row].draw(canvas, baseX + 565, baseY + 75, paint);
+            ownedLabels[row].setValue(economy.getOwned(index));
+            ownedLabels[row].draw(canvas, baseX + 565, baseY + 115, paint);
+            rowAffordable[row] = economy.canAfford(index);
+            atlas.draw(canvas, rowAffordable[row] ?
+                       R.drawable.buyover : R.drawable.buyunder, baseX + BUY_BUTTON_BOUNDS.left, baseY + BUY_BUTTON_BOUNDS.top, paint);
+            if(buyMode != BuyMode.ONE)
+            {
+                quantityLabels[row].setValue(economy.getQuantity(index));
+                quantityLabels[row].draw(canvas, baseX + BUY_BUTTON_BOUNDS.left, baseY + 135, paint);
+            }
+
+        }
+        canvas.restore();
 
+        if(offlineSummary != null)
+        {
+            final int colour = paint.getColor();
+            paint.setColor(SUMMARY_COLOUR);
+            canvas.drawRect(SUMMARY_BOUNDS, paint);
+            paint.setColor(colour);
+            paint.setTextSize(30f);
+            for (int line = 0; line < offlineSummary.length; line++)
+                canvas.drawText(offlineSummary[line], SUMMARY_BOUNDS.left + 30, SUMMARY_BOUNDS.top + 60 + (line * 50), paint);
         }
 
+        dirty.setEmpty();
     }
 
     /**
      * Handles what happens when the user presses down on the game screen,
-     * such as buying properties.
+     * such as pressing the coin or starting to scroll the property list. This must only be called on the game thread.
+     * Each finger can press the coin, the presses are credited together on the next step.
+     * Only one finger at a time can scroll the property list.
+     * @param pointer The id of the finger.
      * @param touchX The x coordinate of the users press.
      * @param touchY The y coordinate of the users press.
      */
-    public void handlePress(final int touchX, final int touchY)
+    public void handlePress(final int pointer, final int touchX, final int touchY)
     {
-        final Rect coin = new Rect(349, 1365, 549, 1565);
-        if(coin.contains(touchX, touchY))
+        if(offlineSummary != null)
         {
-            money++;
-            coinPressed = true;
+            hideOfflineSummary();
             return;
         }
-        for (int index = 0; index < Building.values().length; index++)
+        if(COIN_BOUNDS.contains(touchX, touchY))
         {
-            int baseX = propertyOffsetX;
-            int baseY = propertyOffsetY + (propertyHeight * index);
-            final Rect buy = new Rect(baseX + 750, baseY + 60, baseX + 750 + 75, baseY + 60 + 50);
-            if(buy.contains(touchX, touchY))
-            {
-                if(money >= Building.values()[index].getCost(ownedProperties[index]))
-                {
-                    money -= Building.values()[index].getCost(ownedProperties[index]);
-                    ownedProperties[index]++;
-                    break;
-                }
-            }
+            if(coinPointers == 0)
+                dirty.union(COIN_BOUNDS);
+            coinPointers |= pointerBit(pointer);
+            pendingTaps[pointerSlot(pointer)]++;
+            return;
+        }
+        if(BUY_MODE_BOUNDS.contains(touchX, touchY))
+        {
+            economy.setBuyMode(economy.getBuyMode().next());
+            dirty.union(BUY_MODE_BOUNDS);
+            dirty.union(LIST_BOUNDS);
+            moneyChanged();
+            return;
+        }
+        if(listPointer == -1 && LIST_BOUNDS.contains(touchX, touchY))
+        {
+            listPointer = pointer;
+            pressedRow = propertyList.rowAt(touchY);
+            pressedX = touchX;
+            pressedY = touchY;
+            propertyList.press(touchY);
         }
     }
 
+    /**
+     * Handles the user moving their finger while it's on the screen, scrolling the property list if it was pressed.
+     * This must only be called on the game thread.
+     * @param pointer The id of the finger.
+     * @param touchX The x coordinate of the users finger.
+     * @param touchY The y coordinate of the users finger.
+     */
+    public void handleMove(final int pointer, final int touchX, final int touchY)
+    {
+        if(pointer == listPointer)
+            propertyList.drag(touchY);
+    }
+
     /**
      * Handles what happens when the user releases their finger from the screen.
+     * Buy buttons are pressed on release, and only if the finger didn't scroll the list, so that
+     * dragging the list from a button doesn't buy anything.
+     * This must only be called on the game thread.
+     * @param pointer The id of the finger.
      * @param touchX The x coordinate of the users press.
      * @param touchY The y coordinate of the users press.
      */
-    public void handleRelease(final int touchX, final int touchY)
+    public void handleRelease(final int pointer, final int touchX, final int touchY)
     {
-        coinPressed = false;
+        releaseCoin(pointer);
+        if(pointer != listPointer)
+            return;
+        listPointer = -1;
+        propertyList.release();
+        final int index = pressedRow;
+        pressedRow = -1;
+        if(index == -1 || !propertyList.isTap())
+            return;
+        // The row was found with a division when it was pressed, so only its own button needs testing
+        final int rowY = pressedY - propertyList.getRowTop(index, propertyList.getOffset(1f));
+        if(BUY_BUTTON_BOUNDS.contains(pressedX - propertyOffsetX, rowY) && economy.purchase(index))
+        {
+            markRow(index);
+            moneyChanged();
+        }
     }
 
     /**
-     * Loads drawable images that are used multiple times into memory to avoid loading every time
-     * that they're needed.
+     * Handles the system cancelling the gesture, every finger is lifted without buying anything.
+     * This must only be called on the game thread.
      */
-    private void loadAssets()
+    public void handleCancel()
     {
-        background = BitmapFactory.decodeResource(context.getResources(), R.drawable.background);
-        coin = BitmapFactory.decodeResource(context.getResources(), R.drawable.coin);
-        coinDown = BitmapFactory.decodeResource(context.getResources(), R.drawable.coinpressed);
-        buyUnder = BitmapFactory.decodeResource(context.getResources(), R.drawable.buyunder);
-        buyOver = BitmapFactory.decodeResource(context.getResources(), R.drawable.buyover);
+        if(coinPointers != 0)
+            dirty.union(COIN_BOUNDS);
+        coinPointers = 0;
+        if(listPointer == -1)
+            return;
+        listPointer = -1;
+        pressedRow = -1;
+        propertyList.release();
     }
 
     /**
-     * Returns the total amount of income per second the users properties generate.
-     * @return the amount per second all properties will generate.
+     * Lifts a finger from the coin, showing the coin released once no fingers are holding it.
+     * @param pointer The id of the finger.
      */
-    public int getIncomePerSecond()
+    private void releaseCoin(final int pointer)
     {
-        int earnings = 0;
-        for (int index = 0; index < ownedProperties.length; index++) {
-            if (ownedProperties[index] < 1)
-                continue;
-            earnings += (ownedProperties[index] * Building.values()[index].getIncome());
+        if(coinPointers == 0)
+            return;
+        coinPointers &= ~pointerBit(pointer);
+        if(coinPointers == 0)
+            dirty.union(COIN_BOUNDS);
+    }
+
+    /**
+     * Gets the bit for a finger in a set of fingers, ids past the size of an int share the last bit.
+     * @param pointer The id of the finger.
+     * @return The finger's bit.
+     */
+    private static int pointerBit(final int pointer)
+    {
+        return 1 << pointerSlot(pointer);
+    }
+
+    /**
+     * Gets the slot for a finger in the per finger state, ids past the last slot share it.
+     * @param pointer The id of the finger.
+     * @return The finger's slot.
+     */
+    private static int pointerSlot(final int pointer)
+    {
+        return Math.min(pointer, MAX_POINTERS - 1);
+    }
+
+    /**
+     * Counts the presses of the coin made during a step against each finger's own limit, then against the limit
+     * for every finger together, which allows as many presses as {@link #MAX_TAPPING_FINGERS} fingers could make.
+     * A finger's limiter is created on its first press and then kept, so its credit carries between presses.
+     * @param step The length of the step in nanoseconds.
+     * @return The number of presses that should be credited.
+     */
+    private int creditTaps(final long step)
+    {
+        int taps = 0;
+        for (int index = 0; index < MAX_POINTERS; index++)
+        {
+            if(tapLimiters[index] == null)
+            {
+                if(pendingTaps[index] == 0)
+                    continue;
+                tapLimiters[index] = new TapLimiter(maxTapRate, tapBurst);
+            }
+            taps += tapLimiters[index].accept(pendingTaps[index], step);
+            pendingTaps[index] = 0;
         }
-        return earnings;
+        return totalTapLimiter.accept(taps, step);
     }
 
     /**
-     * Formats numbers by adding commas between different values.
-     * @param number The number to be formatted.
-     * @return The formatted number as a String.
+     * Sets how fast each finger can press the coin and still have every press counted.
+     * The limit for every finger together is scaled from it.
+     * This must only be called on the game thread.
+     * @param maxRate The most presses per second by each finger that are counted over time.
+     * @param burst The most presses by each finger that are counted at once after a pause.
      */
-    private String formatNumber(final int number)
+    public void setTapLimit(final double maxRate, final int burst)
     {
-        return new DecimalFormat("###,###,###,###,###,###,###").format(number);
+        if(!(maxRate > 0) || burst < 1)
+            throw new IllegalArgumentException("The tap rate and burst must be positive");
+        maxTapRate = maxRate;
+        tapBurst = burst;
+        Arrays.fill(tapLimiters, null); // Rebuilt with the new limit on each finger's next press
+        totalTapLimiter = new TapLimiter(maxRate * MAX_TAPPING_FINGERS, burst * MAX_TAPPING_FINGERS);
     }
 
     /**
-     * Loads the players data from the database
-     * @param manager The instance of the database manager
+     * Gets the number of presses of the coin that were over the limit, across every finger.
+     * @return The number of presses that weren't credited.
      */
-    public void load(final DatabaseManager manager)
+    public long getRejectedTaps()
     {
-        final Cursor data = manager.getAllEntries();
-        Log.d("Entries", "There are " + data.getCount() + " entries in table.");
-        if(data.getCount() == 0)
+        long rejected = totalTapLimiter.getRejected();
+        for (final TapLimiter limiter : tapLimiters)
+        {
+            if(limiter != null)
+                rejected += limiter.getRejected();
+        }
+        return rejected;
+    }
+
+    /**
+     * Pays the player for the time the game was closed and prepares the summary that is shown on the first frame.
+     * @param savedAt The wall clock time of the save in milliseconds.
+     * @param savedRealtime The time since the device booted of the save in milliseconds.
+     */
+    private void payOfflineEarnings(final long savedAt, final long savedRealtime)
+    {
+        final long now = System.currentTimeMillis();
+        final long elapsed = offlineProgress.getElapsed(savedAt, savedRealtime, now, SystemClock.elapsedRealtime());
+        final Money earnings = offlineProgress.getEarnings(economy.getIncomePerSecond(), elapsed, new Money());
+        if(earnings.signum() <= 0)
+            return;
+        economy.earn(earnings);
+        Log.d("Offline", "Paid for " + elapsed + "ms away");
+        if(elapsed < MIN_SUMMARY_AWAY)
             return;
-        if(data.moveToFirst())
+
+        final NumberLabel earned = new NumberLabel("Your properties earned £", "");
+        earned.setValue(earnings);
+        final long minutes = Math.min(elapsed, offlineProgress.getCap()) / 60000;
+        offlineSummary = new String[] {
+                "Welcome back!",
+                "You were away for " + (minutes / 60) + "h " + (minutes % 60) + "m",
+                earned.toString()
+        };
+        offlineSummaryRemaining = SUMMARY_DURATION;
+    }
+
+    /**
+     * Records when the game was paused, so the player can be paid for the time in the background when it's resumed.
+     * The game loop must be parked while this is called.
+     */
+    public void pause()
+    {
+        pausedAt = System.currentTimeMillis();
+        pausedRealtime = SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * Pays the player for the time the game was paused, the game loop must be parked while this is called.
+     */
+    public void resume()
+    {
+        if(pausedAt == 0)
+            return;
+        payOfflineEarnings(pausedAt, pausedRealtime);
+        pausedAt = 0;
+        economy.updatePrices();
+        moneyChanged();
+        invalidate();
+    }
+
+    /**
+     * Whether or not anything on screen is moving, so the game shouldn't drop to the idle frame rate.
+     * @return true if the property list is scrolling or the coin is held down.
+     */
+    public boolean isAnimating()
+    {
+        return coinPointers != 0 || propertyList.isMoving();
+    }
+
+    /**
+     * Hides the summary of earnings while away.
+     */
+    private void hideOfflineSummary()
+    {
+        offlineSummary = null;
+        invalidate();
+    }
+
+    /**
+     * Marks the whole game as needing to be redrawn, such as when the surface is recreated.
+     */
+    public void invalidate()
+    {
+        dirty.set(0, 0, GAME_WIDTH, GAME_HEIGHT);
+    }
+
+    /**
+     * Marks a region of the game as needing to be redrawn, such as when something is drawn over it.
+     * @param region The region in game coordinates.
+     */
+    public void invalidate(final Rect region)
+    {
+        dirty.union(region);
+    }
+
+    /**
+     * Whether or not anything has changed since the game was last rendered.
+     * @return true if a region of the game needs to be redrawn.
+     */
+    public boolean isDirty()
+    {
+        return !dirty.isEmpty();
+    }
+
+    /**
+     * Gets the region of the game that needs to be redrawn.
+     * @return The dirty region in game coordinates, this is the live rectangle so it shouldn't be modified.
+     */
+    public Rect getDirtyRegion()
+    {
+        return dirty;
+    }
+
+    /**
+     * Marks the wealth and income text as dirty, along with any row on screen whose
+     * buy button changes state because of the new balance. Rows that aren't on screen are
+     * brought up to date when they're next drawn, so this costs the same however many properties there are.
+     */
+    private void moneyChanged()
+    {
+        dirty.union(HEADER_BOUNDS);
+        final boolean maxMode = economy.getBuyMode() == BuyMode.MAX;
+        final float offset = propertyList.getOffset(1f);
+        final int last = propertyList.getLastVisible(offset);
+        for (int index = propertyList.getFirstVisible(offset); index <= last; index++)
         {
-            money = data.getInt(1);
-            ownedProperties[0] = data.getInt(2);
-            ownedProperties[1] = data.getInt(3);
-            ownedProperties[2] = data.getInt(4);
-            ownedProperties[3] = data.getInt(5);
-            ownedProperties[4] = data.getInt(6);
-            ownedProperties[5] = data.getInt(7);
+            if(maxMode && economy.updatePrice(index))
+                markRow(index);
+            final int row = index % rowIndices.length;
+            if(rowIndices[row] != index || economy.canAfford(index) != rowAffordable[row])
+                markRow(index);
         }
     }
 
     /**
-     * Save the players data to the database
-     * @param manager The instance of database manager
+     * Marks a row of the property list as dirty, if it's on screen.
+     * @param index The index of the property.
+     */
+    private void markRow(final int index)
+    {
+        final int baseY = propertyList.getRowTop(index, propertyList.getOffset(1f));
+        final int top = Math.max(baseY, LIST_BOUNDS.top);
+        final int bottom = Math.min(baseY + propertyHeight, LIST_BOUNDS.bottom);
+        if(top < bottom)
+            dirty.union(0, top, GAME_WIDTH, bottom);
+    }
+
+    /**
+     * Creates the render state for the rows of the property list. There is only enough for the rows
+     * that can be on screen at once, each property uses the row at its index modulo the number of rows,
+     * so consecutive properties on screen never share one.
+     * @param count The number of rows.
+     */
+    private void createRows(final int count)
+    {
+        rowIndices = new int[count];
+        rowAffordable = new boolean[count];
+        rowLayer = new StaticLayer(bitmapLoader, count, ROW_LAYER_WIDTH, propertyHeight);
+        priceLabels = createLabels(count, "Price: £", "");
+        ownedLabels = createLabels(count, "Owned: ", "");
+        quantityLabels = createLabels(count, "x", "");
+        for (int row = 0; row < count; row++)
+            rowIndices[row] = -1;
+    }
+
+    /**
+     * Points a row's render state at a property, rasterising the parts of the row that never change
+     * for that property only when the row is reused for a different one.
+     * @param index The index of the property.
+     * @param paint The paint object that is used for rendering.
+     * @return The row holding the property's render state.
      */
-    public void save(final DatabaseManager manager)
+    private int bindRow(final int index, final Paint paint)
     {
-        if(!manager.insertEntry((int) money, ownedProperties[0], ownedProperties[1], ownedProperties[2], ownedProperties[3], ownedProperties[4], ownedProperties[5]))
-            manager.updateEntry((int) money, ownedProperties[0], ownedProperties[1], ownedProperties[2], ownedProperties[3], ownedProperties[4], ownedProperties[5]);
+        final int row = index % rowIndices.length;
+        if(rowIndices[row] == index)
+            return row;
+        rowIndices[row] = index;
+        rasteriseRow(row, index, paint);
+        if(economy.getBuyMode() == BuyMode.MAX)
+            economy.updatePrice(index);
+        return row;
+    }
+
+    /**
+     * Draws a property's name, icon, income and description into its row of the static layer.
+     * @param row The row of the static layer.
+     * @param index The index of the property.
+     * @param paint The paint object that is used for rendering.
+     */
+    private void rasteriseRow(final int row, final int index, final Paint paint)
+    {
+        final Canvas layer = rowLayer.begin(row);
+        paint.setTextSize(30f);
+        final String name = catalog.getName(index);
+        final String description = catalog.getDescription(index);
+        layer.drawText(name, 100 - (paint.measureText(name) / 2), 50, paint);
+        atlas.draw(layer, icons[index], 68, 65, paint);
+        rowIncomeLabel.setValue(rowIncome.set(catalog.getIncome(index)));
+        rowIncomeLabel.draw(layer, 100 - (rowIncomeLabel.getWidth(paint) / 2), 160, paint);
+        layer.drawText(description, 350 - (paint.measureText(description) / 2), 100, paint);
+        rowLayer.end();
+    }
+
+    /**
+     * Loads drawable images that are used multiple times into memory to avoid loading every time
+     * that they're needed. Sprites are packed into a single atlas, building icons share its
+     * cells and are decoded the first time they're drawn. The background is opaque and decoded at the size of the game.
+     */
+    private void loadAssets()
+    {
+        background = bitmapLoader.decode(R.drawable.background, GAME_WIDTH, GAME_HEIGHT, true);
+        atlas = new SpriteAtlas(bitmapLoader, ATLAS_WIDTH, ATLAS_HEIGHT);
+        atlas.pin(R.drawable.coin);
+        atlas.pin(R.drawable.coinpressed);
+        atlas.pin(R.drawable.buyunder);
+        atlas.pin(R.drawable.buyover);
+
+        icons = new int[catalog.getCount()];
+        for (int index = 0; index < catalog.getCount(); index++)
+            icons[index] = BuildingIcons.getResourceId(context.getResources(), context.getPackageName(), catalog.getKey(index));
+        atlas.reserveCells(icons);
+    }
+
+    /**
+     * Gets the economy the game is drawing.
+     * @return The players money and properties.
+     */
+    public Economy getEconomy()
+    {
+        return economy;
+    }
+
+    /**
+     * Caches the text of the buy mode button along with its width,
+     * so that it doesn't need to be measured every frame.
+     * @param paint The paint object that is used for rendering.
+     */
+    private void measureText(final Paint paint)
+    {
+        paint.setTextSize(30f);
+        final BuyMode[] modes = BuyMode.values();
+        final String[] buyModeText = new String[modes.length];
+        buyModeWidths = new float[modes.length];
+        for (int index = 0; index < modes.length; index++)
+        {
+            buyModeText[index] = "Buy " + modes[index].getLabel();
+            buyModeWidths[index] = paint.measureText(buyModeText[index]);
+        }
+        this.buyModeText = buyModeText;
+    }
+
+    /**
+     * Restores the players save, which can be read on another thread while the game's assets load
+     * @param state The save that was read
+     */
+    public void restore(final SaveState state)
+    {
+        economy.restore(state);
+        payOfflineEarnings(state.getSavedAt(), state.getSavedRealtime());
+        economy.updatePrices();
+        moneyChanged();
+        invalidate();
+    }
+
+    /**
+     * Takes a snapshot of the players data and hands it to the save writer, which writes it in the background
+     * @param writer The save writer
+     */
+    public void save(final SaveWriter writer)
+    {
+        economy.save(saveState);
+        saveState.setSavedAt(System.currentTimeMillis(), SystemClock.elapsedRealtime());
+        writer.submit(saveState);
+    }
+
+    /**
+     * Sets the save writer used to save the game automatically while it's running
+     * @param saveWriter The save writer, or null to stop saving automatically
+     */
+    public void setAutosave(final SaveWriter saveWriter)
+    {
+        this.saveWriter = saveWriter;
+        autosaveTimer = 0;
     }
 
     /**
      * Declaration of assets
      */
+    private final BitmapLoader bitmapLoader; // Decodes images at the size they're drawn within the bitmap budget
     private Bitmap background;
-    private Bitmap coin;
-    private Bitmap coinDown;
-    private Bitmap buyUnder;
-    private Bitmap buyOver;
+    private SpriteAtlas atlas; // Atlas holding the coin, buy button and building icon sprites
+    private int[] icons; // The drawable resource id of each property's icon
+
+    /**
+     * Size of the sprite atlas
+     */
+    private final int ATLAS_WIDTH = 1024;
+    private final int ATLAS_HEIGHT = 512;
+    private final int ROW_LAYER_WIDTH = 560; // The width of each row's static layer, up to where the price is drawn
+
+    /**
+     * Text that is drawn every frame, kept between frames so it is only rebuilt and measured when it changes
+     */
+    private final NumberLabel wealthLabel = new NumberLabel("Total wealth: £", "");
+    private final NumberLabel incomeLabel = new NumberLabel("Income per second: £", "");
+    private final NumberLabel rowIncomeLabel = new NumberLabel("£", "/s"); // Shared by every row, as it's only drawn into the static layer
+    private final Money rowIncome = new Money(); // Reused for handing each property's income to its label
+    private String[] buyModeText;
+    private float[] buyModeWidths;
+
+    /**
+     * Render state of the rows of the property list, indexed by row rather than by property
+     */
+    private int[] rowIndices; // The property each row was last drawn for, -1 if it hasn't been rasterised
+    private boolean[] rowAffordable; // Whether or not the property could be afforded when its row was last drawn
+    private StaticLayer rowLayer; // The parts of each row that never change for its property, rebuilt when the row is reused
+    private NumberLabel[] priceLabels;
+    private NumberLabel[] ownedLabels;
+    private NumberLabel[] quantityLabels;
+
+    /**
+     * Creates a label for each row of the property list.
+     * @param count The number of rows.
+     * @param prefix Text drawn before the number.
+     * @param suffix Text drawn after the number.
+     * @return A label for each row.
+     */
+    private NumberLabel[] createLabels(final int count, final String prefix, final String suffix)
+    {
+        final NumberLabel[] labels = new NumberLabel[count];
+        for (int index = 0; index < labels.length; index++)
+            labels[index] = new NumberLabel(prefix, suffix);
+        return labels;
+    }
 
     /**
      * Used to determine X, Y positions of properties in the list
@@ -221,4 +707,25 @@ public class Game {
     private int propertyOffsetY = 290;
     private int propertyHeight = 175;
 
+    /**
+     * Regions of the game that are redrawn independently
+     */
+    private final int GAME_WIDTH = 900;
+    private final int GAME_HEIGHT = 1600;
+    private final Rect HEADER_BOUNDS = new Rect(0, 240, GAME_WIDTH, 290);
+    private final Rect COIN_BOUNDS = new Rect(349, 1365, 549, 1565);
+    private final Rect BUY_MODE_BOUNDS = new Rect(620, 195, 800, 240);
+    private final Rect LIST_BOUNDS = new Rect(0, propertyOffsetY, GAME_WIDTH, COIN_BOUNDS.top); // The part of the screen the property list scrolls in
+    private final Rect BUY_BUTTON_BOUNDS = new Rect(750, 60, 750 + 75, 60 + 50); // The buy button relative to the top left of its row
+    private final Rect SUMMARY_BOUNDS = new Rect(100, 600, 800, 800);
+    private final int SUMMARY_COLOUR = 0xf0ffffff;
+    private final long SUMMARY_DURATION = 10000000000L; // Ten seconds in nanoseconds
+    private final double TAP_VALUE = 1; // The money earned for each press of the coin
+    public static final double DEFAULT_TAP_RATE = 20; // The most presses of the coin per second by each finger that are counted over time
+    public static final int DEFAULT_TAP_BURST = 10; // The most presses of the coin by each finger counted at once, so quick bursts of taps aren't lost
+    private static final int MAX_POINTERS = 32; // Fingers with ids past the last share its state, matching the bits of an int
+    private static final int MAX_TAPPING_FINGERS = 4; // The most fingers a person can realistically tap the coin with at once
+    private final long MIN_SUMMARY_AWAY = 60000; // The shortest time away in milliseconds that the summary is shown for
+    private final long AUTOSAVE_PERIOD = 5000000000L; // Five seconds in nanoseconds, the most progress a crash can lose
+
 }
@@ -16,19 +16,32 @@ public class GameActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
 
         gameView = new GameView(this);
-        new Thread(gameView).start();
         setContentView(gameView);
 
     }
 
+    @Override
+    public void onResume()
+    {
+        super.onResume();
+        gameView.onResume();
+    }
+
     @Override
     public void onPause()
     {
         super.onPause();
         Log.d("Debug", "Saving");
-        gameView.onDestroy();
+        gameView.onPause();
 
     }
 
+    @Override
+    public void onDestroy()
+    {
+        gameView.onDestroy();
+        super.onDestroy();
+    }
+
     
 }
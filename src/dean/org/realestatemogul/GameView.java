@@ -6,11 +6,35 @@ import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Point;
+import android.graphics.Rect;
+import android.os.Debug;
+import android.util.Log;
 import android.view.MotionEvent;
 import android.view.SurfaceHolder;
 import android.view.SurfaceView;
 import android.view.View;
 
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import dean.org.realestatemogul.asset.BitmapLoader;
+import dean.org.realestatemogul.engine.Clock;
+import dean.org.realestatemogul.engine.GameLoop;
+import dean.org.realestatemogul.engine.InputQueue;
+import dean.org.realestatemogul.engine.LoopController;
+import dean.org.realestatemogul.entity.BuildingCatalog;
+import dean.org.realestatemogul.persistence.SaveState;
+import dean.org.realestatemogul.persistence.SaveWriter;
+import dean.org.realestatemogul.persistence.SnapshotFile;
+import dean.org.realestatemogul.profile.Profiler;
+import dean.org.realestatemogul.profile.StageTimer;
+import dean.org.realestatemogul.render.ProfilerOverlay;
+import dean.org.realestatemogul.render.Viewport;
+
 /**
  * Created by Dean on 13/01/2018.
  */
@@ -18,116 +42,451 @@ import android.view.View;
 /**
  * Class that is used as the game engine.
  */
-public class GameView extends SurfaceView implements Runnable {
-
-    private boolean isRunning = true; // Determines whether or not the game is running.
+public class GameView extends SurfaceView implements GameLoop.Callback, SurfaceHolder.Callback, InputQueue.Handler {
 
     private final int GAME_HEIGHT = 1600; // The height of the game
     private final int GAME_WIDTH = 900; // The width of the game
-    private final int GAME_FRAME_DELAY = 20; // The delay between each game loop cycle, 20 * 50 = 1000ms (50fps)
+    private final int UPDATE_RATE = 50; // The number of simulation steps per second, each step is 20ms
+    private final int FRAME_RATE = 50; // The number of frames rendered per second
+    private final int IDLE_FRAME_RATE = 10; // The number of frames rendered per second while the game is idle
+    private final int INPUT_CAPACITY = 64; // The most touches that can wait between simulation steps
+
+    private final int IDLE_DELAY = 2000000000; // The time in nanoseconds without touches or animation before the frame rate drops
+
+    private final GameLoop gameLoop = new GameLoop(this, Clock.SYSTEM, UPDATE_RATE, FRAME_RATE); // Runs the game in fixed steps
+    private final LoopController loopController = new LoopController(gameLoop, "GameLoop"); // Runs the loop only while the game is visible
+    private long idleTime = 0; // Simulated time since the last touch, used to drop to the idle frame rate
 
     private Paint paint; // The paint object for rendering.
     private Canvas gameCanvas; // The Canvas object for rendering our game into
     private Bitmap gameBuffer; // The underlying bitmap that the game canvas draws to
     private Game game; // Instance of the Game class that controls the actual game
+    private final Viewport viewport = new Viewport(GAME_WIDTH, GAME_HEIGHT); // Maps the game onto the device screen
+    private final Rect surfaceDirty = new Rect(); // The region of the screen being redrawn this frame
+    private volatile boolean redrawAll = false; // Set on the UI thread when the surface needs redrawing in full, applied by the game thread
+    private final InputQueue inputQueue = new InputQueue(INPUT_CAPACITY); // Touches waiting to be applied on the game thread
+    private final Profiler profiler = new Profiler(Clock.SYSTEM, 1000000000L / FRAME_RATE); // Times each frame, only enabled in debug builds
+    private ProfilerOverlay profilerOverlay; // Shows the profiler on screen, null unless this is a debug build
+
+    private DatabaseManager databaseManager; // The database saves were kept in before the save file, only read to migrate them
+    private SnapshotFile saveFile; // The file the game is saved to
+    private SaveWriter saveWriter; // Writes saves on a background thread
+    private SaveState loadedSave; // The save read while starting up, applied to the game once its assets have loaded
+    private boolean saveFound = false; // Whether or not there was a save to read while starting up
 
-    private DatabaseManager databaseManager;
+    private final StageTimer startupTimer = new StageTimer(Clock.SYSTEM); // Times each stage of starting up
+    private final long constructed; // When the view was made, the start of the splash stage
+    private final Object startupLock = new Object(); // Stops startup finishing at the same time as a splash frame or being destroyed
+    private volatile boolean ready = false; // Whether or not the game has loaded, nothing but the splash is drawn until it has
+    private boolean splashShown = false; // Whether or not the splash frame has been drawn, guarded by startupLock
+    private boolean destroyed = false; // Whether or not the view has been destroyed, guarded by startupLock
+    private final Paint splashPaint = new Paint(Paint.ANTI_ALIAS_FLAG); // Paint used to draw the splash on the UI thread
 
     /**
-     * Constructor of GameView
+     * Constructor of GameView, only the work needed to show a splash frame is done here on the UI thread.
+     * The game's assets and save are loaded in the background.
      * @param context The application context
      */
     public GameView(final Context context)
     {
         super(context);
+        constructed = startupTimer.start();
         paint = new Paint();
-        databaseManager = new DatabaseManager(context);
-        gameBuffer = Bitmap.createBitmap(GAME_WIDTH, GAME_HEIGHT, Bitmap.Config.ARGB_8888);
-        gameCanvas = new Canvas(gameBuffer);
-        game = new Game(context);
-        game.load(databaseManager);
+        getHolder().addCallback(this);
+        gameLoop.setIdleFrameRate(IDLE_FRAME_RATE);
+        startup(context);
+        if(BuildConfig.DEBUG)
+        {
+            profiler.setEnabled(true);
+            setAllocationCounting(true);
+            profilerOverlay = new ProfilerOverlay(profiler, 0, 0, GAME_WIDTH);
+        }
     }
 
     /**
-     * The game loop itself, continuous loop of processing and rendering with sleep delays.
+     * Starts or stops counting allocations for the profiler, which is only done in debug builds.
+     * @param counting true to start counting, false to stop.
      */
-    @Override
-    public void run()
+    @SuppressWarnings("deprecation") // Debug's counters are the only way to count one thread's allocations per frame
+    private void setAllocationCounting(final boolean counting)
     {
-        while (isRunning)
+        if(counting)
         {
-            long now = System.currentTimeMillis();
-
-            process();
-            render();
+            profiler.setAllocationCounter(new Profiler.AllocationCounter() {
+                @Override
+                public long getAllocations()
+                {
+                    return Debug.getThreadAllocCount();
+                }
+            });
+            Debug.startAllocCounting();
+        }
+        else
+        {
+            Debug.stopAllocCounting();
+            profiler.setAllocationCounter(Profiler.AllocationCounter.NONE);
+        }
+    }
 
-            long sleepTime = (GAME_FRAME_DELAY - (System.currentTimeMillis() - now));
-            if(sleepTime > 0)
+    /**
+     * Decodes the game's assets and reads its save in parallel on background threads.
+     * Whichever finishes last applies the save and starts the game loop.
+     * @param context The application context
+     */
+    private void startup(final Context context)
+    {
+        final ExecutorService executor = Executors.newFixedThreadPool(STARTUP_THREADS, new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable)
             {
-                try {
-                    Thread.sleep(sleepTime);
-                } catch(final InterruptedException ie) {
-                    ie.printStackTrace();
-                }
+                final Thread thread = new Thread(runnable, "Startup");
+                thread.setDaemon(true);
+                return thread;
             }
+        });
+        final AtomicInteger remaining = new AtomicInteger(STARTUP_THREADS); // Stages still running
+        executor.execute(new Runnable() {
+            @Override
+            public void run()
+            {
+                final long start = startupTimer.start();
+                final BitmapLoader bitmapLoader = new BitmapLoader(getResources(), BitmapLoader.getDefaultBudget(context));
+                gameBuffer = bitmapLoader.create(GAME_WIDTH, GAME_HEIGHT, Bitmap.Config.RGB_565); // Opaque, so half the size of ARGB_8888
+                gameCanvas = new Canvas(gameBuffer);
+                game = new Game(context, bitmapLoader);
+                startupTimer.stop("assets", start);
+                Log.d("Assets", "Bitmaps use " + bitmapLoader.getUsed() / 1024 + "KB of " + bitmapLoader.getBudget() / 1024 + "KB");
+                if(remaining.decrementAndGet() == 0)
+                    finishStartup();
+            }
+        });
+        executor.execute(new Runnable() {
+            @Override
+            public void run()
+            {
+                final long start = startupTimer.start();
+                final BuildingCatalog catalog = BuildingCatalog.getDefault();
+                databaseManager = new DatabaseManager(context);
+                saveFile = new SnapshotFile(new File(context.getFilesDir(), SAVE_FILE));
+                saveFile.migrateFrom(databaseManager, catalog);
+                loadedSave = new SaveState(catalog);
+                saveFound = saveFile.read(loadedSave);
+                startupTimer.stop("save", start);
+                if(remaining.decrementAndGet() == 0)
+                    finishStartup();
+            }
+        });
+        executor.shutdown(); // The threads finish once both stages have run
+    }
+
+    /**
+     * Applies the save read while starting up, starts saving and starts the game loop.
+     * Called on whichever startup thread finished last.
+     */
+    private void finishStartup()
+    {
+        final long start = startupTimer.start();
+        synchronized (startupLock)
+        {
+            if(destroyed)
+                return;
+            if(saveFound)
+                game.restore(loadedSave);
+            loadedSave = null;
+            saveWriter = new SaveWriter(saveFile, game.getEconomy().getCatalog());
+            saveWriter.start();
+            game.setAutosave(saveWriter);
+            ready = true;
+        }
+        loopController.start();
+        startupTimer.stop("restore", start);
+        Log.d("Startup", startupTimer.report(new StringBuilder()).toString());
+    }
 
+    /**
+     * Draws the splash frame straight onto the surface while the game is loading.
+     * @param holder The SurfaceHolder of the surface.
+     */
+    private void drawSplash(final SurfaceHolder holder)
+    {
+        synchronized (startupLock)
+        {
+            if(ready)
+                return;
+            final Canvas canvas = holder.lockCanvas();
+            if(canvas == null)
+                return;
+            canvas.drawColor(SCREEN_COLOUR.toArgb());
+            splashPaint.setTextAlign(Paint.Align.CENTER);
+            splashPaint.setTextSize(canvas.getWidth() / 15f);
+            canvas.drawText("Loading...", canvas.getWidth() / 2f, canvas.getHeight() / 2f, splashPaint);
+            holder.unlockCanvasAndPost(canvas);
+            if(!splashShown)
+            {
+                splashShown = true;
+                startupTimer.stop("splash", constructed);
+            }
         }
     }
 
     /**
-     * Method for updating the game before rendering in each cycle.
+     * Gets the profiler timing each frame, it only records in debug builds.
+     * @return The profiler.
+     */
+    public Profiler getProfiler()
+    {
+        return profiler;
+    }
+
+    /**
+     * Method for updating the game by one fixed step.
+     * @param step The length of the step in nanoseconds.
+     */
+    @Override
+    public void update(final long step)
+    {
+        profiler.beginFrame();
+        final long start = profiler.start();
+        if(inputQueue.drain(this) > 0)
+            idleTime = 0;
+        else
+            idleTime += step;
+        game.update(step);
+        gameLoop.setIdle(idleTime >= IDLE_DELAY && !game.isAnimating());
+        profiler.stop(Profiler.UPDATE, start);
+    }
+
+    /**
+     * Applies a touch that was queued by the UI thread, called on the game thread while draining the input queue.
+     * @param type The type of touch.
+     * @param pointer The id of the finger.
+     * @param x The x coordinate of the touch in game coordinates.
+     * @param y The y coordinate of the touch in game coordinates.
      */
-    public void process()
+    @Override
+    public void onInput(final int type, final int pointer, final int x, final int y)
     {
-        game.process();
+        if(type == InputQueue.PRESS)
+            game.handlePress(pointer, x, y);
+        else
+        if(type == InputQueue.MOVE)
+            game.handleMove(pointer, x, y);
+        else
+        if(type == InputQueue.RELEASE)
+            game.handleRelease(pointer, x, y);
+        else
+        if(type == InputQueue.CANCEL)
+            game.handleCancel();
     }
 
     /**
      * Renders the game onto the SurfaceView, the Canvas object that the game is rendered to
      * is scaled to the current devices screen size.
+     * Only the regions of the game that have changed are redrawn and posted, if nothing
+     * has changed the frame is skipped entirely.
+     * @param interpolation How far between simulation steps the frame is, from 0 to 1.
      */
-    public void render()
+    @Override
+    public void render(final float interpolation)
     {
-        gameCanvas.drawColor(SCREEN_COLOUR.toArgb()); //Clear the canvas
-        game.render(gameCanvas, paint); //Render the game
+        profiler.beginFrame();
+        if(redrawAll)
+        {
+            redrawAll = false; // Cleared first, so a request made while this frame renders isn't lost
+            game.invalidate();
+        }
+        if(profilerOverlay != null && profilerOverlay.update(System.nanoTime()))
+            game.invalidate(profilerOverlay.getBounds());
+        if (!game.isDirty() || !getHolder().getSurface().isValid() || !viewport.isReady())
+        {
+            profiler.endFrame();
+            return;
+        }
 
+        long start = profiler.start();
+        final Rect dirty = game.getDirtyRegion();
+        viewport.toSurface(dirty, surfaceDirty);
+        gameCanvas.save();
+        gameCanvas.clipRect(dirty);
+        gameCanvas.drawColor(SCREEN_COLOUR.toArgb()); //Clear the canvas
+        game.render(gameCanvas, paint, interpolation); //Render the game
+        if(profilerOverlay != null)
+            profilerOverlay.draw(gameCanvas, paint);
+        gameCanvas.restore();
+        profiler.stop(Profiler.RENDER, start);
 
-        if (getHolder().getSurface().isValid())
+        start = profiler.start();
+        final Canvas canvas = getHolder().lockCanvas(surfaceDirty);
+        if(canvas != null)
         {
-            final Canvas canvas = getHolder().lockCanvas();
-            canvas.drawBitmap(Bitmap.createScaledBitmap(gameBuffer, getWidth(), getHeight(), true), 0, 0, paint); // Scale the game to the device screen size
+            viewport.present(canvas, gameBuffer); // Scale the game to the device screen size
             getHolder().unlockCanvasAndPost(canvas);
         }
+        profiler.stop(Profiler.BLIT, start);
+        profiler.endFrame();
+    }
+
+    /**
+     * Called when the surface is first created, the whole game is redrawn onto it on the next frame.
+     * @param holder The SurfaceHolder whose surface was created.
+     */
+    @Override
+    public void surfaceCreated(final SurfaceHolder holder)
+    {
+        if(ready)
+            redrawAll = true; // The game's dirty region belongs to the game thread, so it's invalidated there
+        else
+            drawSplash(holder);
+        loopController.setSurfaceAvailable(true);
+    }
 
+    /**
+     * Called when the size of the surface changes, rebuilds the transform used for
+     * scaling the game to the device screen.
+     * @param holder The SurfaceHolder whose surface changed.
+     * @param format The new pixel format of the surface.
+     * @param width The new width of the surface.
+     * @param height The new height of the surface.
+     */
+    @Override
+    public void surfaceChanged(final SurfaceHolder holder, final int format, final int width, final int height)
+    {
+        viewport.resize(width, height);
+        if(ready)
+            redrawAll = true; // The game's dirty region belongs to the game thread, so it's invalidated there
+        else
+            drawSplash(holder);
+    }
+
+    /**
+     * Called when the surface is destroyed, waits for the game loop to park so it doesn't draw to the old surface.
+     * There is nothing to wait for while the game is still loading, as the loop hasn't been started.
+     * @param holder The SurfaceHolder whose surface was destroyed.
+     */
+    @Override
+    public void surfaceDestroyed(final SurfaceHolder holder)
+    {
+        loopController.setSurfaceAvailable(false);
+        if(ready)
+            loopController.awaitParked(PARK_TIMEOUT, TimeUnit.MILLISECONDS);
     }
 
 
     /**
-     * Used to monitor user touch events.
+     * Used to monitor user touch events. Every finger is passed on, so several fingers can tap the coin at once.
+     * Only the latest position of each finger is queued for a move, the historical samples Android batches
+     * into move events are skipped as the game only reacts to where a finger is once per step.
      * @param motionEvent The event that was fired when the user touched the screen.
      * @return true to consume the event and stop other potential classes using it.
      */
     @Override
     public boolean onTouchEvent(final MotionEvent motionEvent)
     {
-        int touchX = (int) (motionEvent.getX() / (((double) getWidth() / (double) GAME_WIDTH))); // Scale the click down to the size of the game
-        int touchY = (int) (motionEvent.getY() / (((double) getHeight() / (double) GAME_HEIGHT))); // Scale the click down to the size of the game
-        if(motionEvent.getAction() == MotionEvent.ACTION_DOWN)
-            game.handlePress(touchX, touchY);
+        if(!ready)
+            return true;
+        final int action = motionEvent.getActionMasked();
+        if(action == MotionEvent.ACTION_MOVE)
+        {
+            for (int index = 0; index < motionEvent.getPointerCount(); index++)
+                queueTouch(InputQueue.MOVE, motionEvent, index);
+        }
+        else
+        if(action == MotionEvent.ACTION_DOWN || action == MotionEvent.ACTION_POINTER_DOWN)
+            queueTouch(InputQueue.PRESS, motionEvent, motionEvent.getActionIndex());
         else
-        if(motionEvent.getAction() == MotionEvent.ACTION_UP)
-            game.handleRelease(touchX, touchY);
+        if(action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_POINTER_UP)
+            queueTouch(InputQueue.RELEASE, motionEvent, motionEvent.getActionIndex());
+        else
+        if(action == MotionEvent.ACTION_CANCEL)
+            inputQueue.offer(InputQueue.CANCEL, 0, 0, 0);
         return true;
     }
 
     /**
-     * Called when the activity is destroyed to save the game.
+     * Queues a touch for the game thread, scaled down to game coordinates.
+     * @param type The type of touch.
+     * @param motionEvent The event holding the touch.
+     * @param index The index of the finger within the event.
+     */
+    private void queueTouch(final int type, final MotionEvent motionEvent, final int index)
+    {
+        final float[] point = viewport.toGame(motionEvent.getX(index), motionEvent.getY(index)); // Scale the click down to the size of the game
+        inputQueue.offer(type, motionEvent.getPointerId(index), (int) point[0], (int) point[1]);
+    }
+
+    /**
+     * Called when the activity is resumed, pays the player for the time in the background and restarts the game loop.
+     */
+    public void onResume()
+    {
+        if(ready)
+            game.resume();
+        idleTime = 0;
+        loopController.setResumed(true);
+    }
+
+    /**
+     * Called when the activity is paused to park the game loop and save the game.
+     * The loop is parked first so the save is a consistent snapshot, and so the game uses no CPU in the background.
+     * If the loop still hasn't parked after a few waits the game is left alone rather than snapshotted while it runs,
+     * the last automatic save is kept instead.
+     * The save is written in the background, this only waits a short time for it to finish
+     * so that the game isn't lost if the process is killed while in the background.
+     */
+    public void onPause()
+    {
+        loopController.setResumed(false);
+        if(!ready)
+            return; // Nothing has been loaded, so there is nothing to save
+        if(!awaitParked())
+        {
+            Log.w("GameView", "The game loop did not park in time, skipping the save");
+            return;
+        }
+        game.pause();
+        if(profiler.isEnabled())
+            Log.d("Profiler", profiler.report(new StringBuilder()).toString());
+        game.save(saveWriter);
+        saveWriter.flush(SAVE_TIMEOUT, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Waits for the game loop to park, trying a few times in case a slow frame is still being drawn.
+     * @return true if the loop parked or has stopped.
+     */
+    private boolean awaitParked()
+    {
+        for (int attempt = 0; attempt < PARK_ATTEMPTS; attempt++)
+        {
+            if(loopController.awaitParked(PARK_TIMEOUT, TimeUnit.MILLISECONDS))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Called when the activity is destroyed to stop the game loop, write any pending save and stop the save writer.
      */
     public void onDestroy()
     {
-        game.save(databaseManager);
+        synchronized (startupLock)
+        {
+            destroyed = true;
+        }
+        loopController.shutdown(PARK_TIMEOUT, TimeUnit.MILLISECONDS);
+        if(BuildConfig.DEBUG)
+            setAllocationCounting(false);
+        if(!ready)
+            return;
+        game.setAutosave(null);
+        saveWriter.close(SAVE_TIMEOUT, TimeUnit.MILLISECONDS);
     }
 
+    private final String SAVE_FILE = "save.bin"; // The name of the save file in the app's files directory
+    private final long SAVE_TIMEOUT = 500; // The most time in milliseconds to wait for a save to be written
+    private final int STARTUP_THREADS = 2; // One thread each for decoding assets and reading the save
+    private final long PARK_TIMEOUT = 500; // The most time in milliseconds to wait for the game loop to finish a frame
+    private final int PARK_ATTEMPTS = 3; // The number of times to wait for the game loop to park before giving up on saving
     private final Color SCREEN_COLOUR = Color.valueOf(0xffdbf2fc); // Colour to use when clearing the screen
 
 }
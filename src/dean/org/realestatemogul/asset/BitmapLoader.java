@@ -0,0 +1,193 @@
+package dean.org.realestatemogul.asset;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+/**
+ * Decodes bitmaps at the size they're drawn in game space rather than at the source or screen density,
+ * and keeps the total size of every bitmap it has made within a budget.
+ * Large images are subsampled by the decoder and scaled the rest of the way as they're decoded, so the full
+ * resolution image is never held in memory, and opaque images use 16 bit pixels.
+ */
+public class BitmapLoader {
+
+    /**
+     * The share of the app's heap that bitmaps may use by default
+     */
+    private static final int BUDGET_FRACTION = 4;
+
+    private final Resources resources; // Resources instance used for decoding bitmaps
+    private final long budget; // The most bytes all bitmaps may use together
+    private long used = 0; // The bytes used by the bitmaps made and not yet released
+
+    /**
+     * Constructor for the loader.
+     * @param resources The resources that bitmaps are decoded from.
+     * @param budget The most bytes all bitmaps made by the loader may use together.
+     */
+    public BitmapLoader(final Resources resources, final long budget)
+    {
+        this.resources = resources;
+        this.budget = budget;
+    }
+
+    /**
+     * Works out a budget from the heap the device gives the app, so low memory devices decode less.
+     * @param context The application context.
+     * @return A quarter of the app's heap in bytes.
+     */
+    public static long getDefaultBudget(final Context context)
+    {
+        final ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        return (activityManager.getMemoryClass() * 1024L * 1024L) / BUDGET_FRACTION;
+    }
+
+    /**
+     * Decodes an image at exactly the size it will be drawn.
+     * @param resourceId The drawable resource id of the image.
+     * @param width The width the image is drawn at in game space.
+     * @param height The height the image is drawn at in game space.
+     * @param opaque true if the image has no transparency, so it can be decoded with 16 bit pixels.
+     * @return The decoded image.
+     * @throws IllegalStateException If the image would go over the budget or can't be decoded.
+     */
+    public Bitmap decode(final int resourceId, final int width, final int height, final boolean opaque)
+    {
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        measure(resourceId, options);
+        int sampleSize = 1;
+        while (options.outWidth / (sampleSize * 2) >= width && options.outHeight / (sampleSize * 2) >= height)
+            sampleSize *= 2;
+        final int sampledWidth = options.outWidth / sampleSize;
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        options.inPreferredConfig = opaque ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+        if(sampledWidth != width)
+        {
+            // Scales the subsampled image to the drawn size while decoding
+            options.inScaled = true;
+            options.inDensity = sampledWidth;
+            options.inTargetDensity = width;
+        }
+        final long size = (long) width * height * (opaque ? 2 : 4);
+        reserve(size, resourceId);
+        Bitmap bitmap = BitmapFactory.decodeResource(resources, resourceId, options);
+        if(bitmap == null)
+        {
+            adjust(-size);
+            throw new IllegalStateException("Image " + resourceId + " could not be decoded");
+        }
+        if(bitmap.getWidth() != width || bitmap.getHeight() != height)
+        {
+            // The aspect ratio differs from the drawn size, so it can't be scaled while decoding
+            final Bitmap scaled = Bitmap.createScaledBitmap(bitmap, width, height, true);
+            bitmap.recycle();
+            bitmap = scaled;
+        }
+        adjust(bitmap.getAllocationByteCount() - size);
+        return bitmap;
+    }
+
+    /**
+     * Decodes an image at its source size in pixels, for sprites that are drawn at their natural size in game space.
+     * @param resourceId The drawable resource id of the image.
+     * @return The decoded image, which should be released once it's no longer needed.
+     * @throws IllegalStateException If the image would go over the budget or can't be decoded.
+     */
+    public Bitmap decode(final int resourceId)
+    {
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        measure(resourceId, options);
+        final long size = (long) options.outWidth * options.outHeight * 4;
+        reserve(size, resourceId);
+        options.inJustDecodeBounds = false;
+        final Bitmap bitmap = BitmapFactory.decodeResource(resources, resourceId, options);
+        if(bitmap == null)
+        {
+            adjust(-size);
+            throw new IllegalStateException("Image " + resourceId + " could not be decoded");
+        }
+        adjust(bitmap.getAllocationByteCount() - size);
+        return bitmap;
+    }
+
+    /**
+     * Reads the size of an image in source pixels without decoding it.
+     * @param resourceId The drawable resource id of the image.
+     * @param out The options to store the size in, as outWidth and outHeight.
+     */
+    public void measure(final int resourceId, final BitmapFactory.Options out)
+    {
+        out.inJustDecodeBounds = true;
+        out.inScaled = false;
+        BitmapFactory.decodeResource(resources, resourceId, out);
+    }
+
+    /**
+     * Creates an empty bitmap within the budget, such as a buffer to draw into.
+     * @param width The width of the bitmap.
+     * @param height The height of the bitmap.
+     * @param config The pixel format of the bitmap.
+     * @return The bitmap.
+     * @throws IllegalStateException If the bitmap would go over the budget.
+     */
+    public Bitmap create(final int width, final int height, final Bitmap.Config config)
+    {
+        final long size = (long) width * height * (config == Bitmap.Config.ARGB_8888 ? 4 : 2);
+        reserve(size, 0);
+        final Bitmap bitmap = Bitmap.createBitmap(width, height, config);
+        adjust(bitmap.getAllocationByteCount() - size);
+        return bitmap;
+    }
+
+    /**
+     * Recycles a bitmap made by the loader and returns its memory to the budget.
+     * @param bitmap The bitmap, which mustn't be used afterwards.
+     */
+    public void release(final Bitmap bitmap)
+    {
+        adjust(-bitmap.getAllocationByteCount());
+        bitmap.recycle();
+    }
+
+    /**
+     * Claims part of the budget.
+     * @param size The number of bytes.
+     * @param resourceId The image being decoded, 0 for a buffer, used when reporting errors.
+     */
+    private synchronized void reserve(final long size, final int resourceId)
+    {
+        if(used + size > budget)
+            throw new IllegalStateException((resourceId != 0 ? "Image " + resourceId : "A bitmap") + " needs " + size +
+                    " bytes but only " + (budget - used) + " of the " + budget + " byte bitmap budget is left");
+        used += size;
+    }
+
+    /**
+     * Corrects the memory in use once the real size of a bitmap is known, or returns memory to the budget.
+     * @param change The change in bytes, negative to free memory.
+     */
+    private synchronized void adjust(final long change)
+    {
+        used += change;
+    }
+
+    /**
+     * Gets the memory used by the bitmaps the loader has made.
+     * @return The number of bytes in use.
+     */
+    public synchronized long getUsed()
+    {
+        return used;
+    }
+
+    public long getBudget()
+    {
+        return budget;
+    }
+
+}
@@ -0,0 +1,31 @@
+package dean.org.realestatemogul.asset;
+
+import android.content.res.Resources;
+
+import dean.org.realestatemogul.R;
+
+/**
+ * Maps the properties of the game onto the drawable resources used for their icons,
+ * keeping Android resources out of the economy. A property's icon is the drawable named after its key.
+ */
+public final class BuildingIcons {
+
+    private BuildingIcons()
+    {
+    }
+
+    /**
+     * Gets the drawable resource used for a property's icon.
+     * This looks the resource up by name, so it should be called once when the icons are loaded rather than every frame.
+     * @param resources The resources of the application.
+     * @param packageName The package the resources belong to.
+     * @param key The key of the property.
+     * @return The drawable resource id of the icon, or the tent if the property has no icon.
+     */
+    public static int getResourceId(final Resources resources, final String packageName, final String key)
+    {
+        final int resourceId = resources.getIdentifier(key, "drawable", packageName);
+        return resourceId != 0 ? resourceId : R.drawable.tent;
+    }
+
+}
@@ -0,0 +1,220 @@
+package dean.org.realestatemogul.asset;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+import android.graphics.Rect;
+import android.util.SparseIntArray;
+
+/**
+ * A single texture that sprites are decoded into once and then drawn from with source rectangle blits.
+ * Sprites that are always needed are pinned along shelves at the top of the atlas, the space that is left
+ * is split into equally sized cells which are shared between building icons using a least recently used
+ * policy, so the atlas stays bounded no matter how large the building catalog grows.
+ */
+public class SpriteAtlas {
+
+    private final BitmapLoader loader; // Decodes sprites within the bitmap budget
+    private final Bitmap atlas; // The underlying bitmap that every sprite is packed into
+    private final Canvas atlasCanvas; // Canvas for drawing decoded sprites into the atlas
+    private final Paint copyPaint = new Paint(Paint.FILTER_BITMAP_FLAG); // Paint used when copying sprites into the atlas
+    private final Paint clearPaint = new Paint(); // Paint used to wipe a cell before it is reused
+    private final Rect destination = new Rect(); // Reused destination rectangle so drawing never allocates
+
+    private final SparseIntArray pinned = new SparseIntArray(); // Resource id to index into pinnedRegions
+    private Rect[] pinnedRegions = new Rect[8]; // Regions of the atlas holding pinned sprites
+    private int pinnedCount = 0; // The number of pinned sprites
+    private int shelfX = 0; // X position of the next pinned sprite on the current shelf
+    private int shelfY = 0; // Y position of the current shelf
+    private int shelfHeight = 0; // Height of the tallest sprite on the current shelf
+
+    private SparseIntArray cells; // Resource id to the cell currently holding it
+    private Rect[] cellBounds; // The full area of each cell
+    private Rect[] cellRegions; // The area of each cell covered by its sprite
+    private int[] cellOwner; // The resource id held by each cell, 0 if the cell is free
+    private int[] cellPrevious; // Links of the least recently used list, towards the most recently used cell
+    private int[] cellNext; // Links of the least recently used list, towards the least recently used cell
+    private int mostRecent = -1; // Head of the least recently used list
+    private int leastRecent = -1; // Tail of the least recently used list
+
+    /**
+     * Constructor for creating an empty atlas.
+     * @param loader The loader that sprites are decoded with, the atlas itself counts towards its budget.
+     * @param width The width of the atlas in pixels.
+     * @param height The height of the atlas in pixels.
+     */
+    public SpriteAtlas(final BitmapLoader loader, final int width, final int height)
+    {
+        this.loader = loader;
+        atlas = loader.create(width, height, Bitmap.Config.ARGB_8888);
+        atlasCanvas = new Canvas(atlas);
+        clearPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.CLEAR));
+    }
+
+    /**
+     * Decodes a sprite and packs it permanently into the atlas.
+     * Sprites must be pinned before cells are reserved.
+     * @param resourceId The drawable resource id of the sprite.
+     */
+    public void pin(final int resourceId)
+    {
+        if(cells != null)
+            throw new IllegalStateException("Sprites cannot be pinned after cells have been reserved");
+        if(pinned.get(resourceId, -1) != -1)
+            return;
+        final Bitmap sprite = loader.decode(resourceId);
+        if(shelfX + sprite.getWidth() > atlas.getWidth())
+        {
+            shelfX = 0;
+            shelfY += shelfHeight;
+            shelfHeight = 0;
+        }
+        if(sprite.getWidth() > atlas.getWidth() || shelfY + sprite.getHeight() > atlas.getHeight())
+            throw new IllegalStateException("Sprite " + resourceId + " does not fit in the atlas");
+        final Rect region = new Rect(shelfX, shelfY, shelfX + sprite.getWidth(), shelfY + sprite.getHeight());
+        atlasCanvas.drawBitmap(sprite, region.left, region.top, copyPaint);
+        loader.release(sprite);
+
+        if(pinnedCount == pinnedRegions.length)
+        {
+            final Rect[] grown = new Rect[pinnedRegions.length * 2];
+            System.arraycopy(pinnedRegions, 0, grown, 0, pinnedCount);
+            pinnedRegions = grown;
+        }
+        pinnedRegions[pinnedCount] = region;
+        pinned.put(resourceId, pinnedCount++);
+        shelfX += sprite.getWidth();
+        shelfHeight = Math.max(shelfHeight, sprite.getHeight());
+    }
+
+    /**
+     * Splits the space left below the pinned sprites into cells large enough to hold
+     * the largest of the given sprites. Sprites are only measured here, they are decoded
+     * the first time they are drawn.
+     * @param resourceIds The drawable resource ids that will be drawn through the cells.
+     */
+    public void reserveCells(final int... resourceIds)
+    {
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        int cellWidth = 1;
+        int cellHeight = 1;
+        for (final int resourceId : resourceIds)
+        {
+            loader.measure(resourceId, options);
+            cellWidth = Math.max(cellWidth, options.outWidth);
+            cellHeight = Math.max(cellHeight, options.outHeight);
+        }
+
+        final int top = shelfY + shelfHeight;
+        final int columns = atlas.getWidth() / cellWidth;
+        final int rows = (atlas.getHeight() - top) / cellHeight;
+        final int count = columns * rows;
+        if(count < 1)
+            throw new IllegalStateException("No space left in the atlas for " + cellWidth + "x" + cellHeight + " cells");
+
+        cells = new SparseIntArray(count);
+        cellBounds = new Rect[count];
+        cellRegions = new Rect[count];
+        cellOwner = new int[count];
+        cellPrevious = new int[count];
+        cellNext = new int[count];
+        for (int index = 0; index < count; index++)
+        {
+            final int left = (index % columns) * cellWidth;
+            final int cellTop = top + (index / columns) * cellHeight;
+            cellBounds[index] = new Rect(left, cellTop, left + cellWidth, cellTop + cellHeight);
+            cellRegions[index] = new Rect();
+            cellPrevious[index] = index - 1;
+            cellNext[index] = index + 1 < count ? index + 1 : -1;
+        }
+        mostRecent = 0;
+        leastRecent = count - 1;
+    }
+
+    /**
+     * Draws a sprite from the atlas at its natural size.
+     * Sprites that are neither pinned nor cached are decoded into the least recently used cell.
+     * @param canvas The canvas to draw onto.
+     * @param resourceId The drawable resource id of the sprite.
+     * @param x The x coordinate to draw the sprite at.
+     * @param y The y coordinate to draw the sprite at.
+     * @param paint The paint to draw the sprite with.
+     */
+    public void draw(final Canvas canvas, final int resourceId, final int x, final int y, final Paint paint)
+    {
+        final Rect source = find(resourceId);
+        destination.set(x, y, x + source.width(), y + source.height());
+        canvas.drawBitmap(atlas, source, destination, paint);
+    }
+
+    /**
+     * Finds the region of the atlas holding a sprite, loading it if needed.
+     * @param resourceId The drawable resource id of the sprite.
+     * @return The region of the atlas that holds the sprite.
+     */
+    private Rect find(final int resourceId)
+    {
+        final int pinnedIndex = pinned.get(resourceId, -1);
+        if(pinnedIndex != -1)
+            return pinnedRegions[pinnedIndex];
+        if(cells == null)
+            throw new IllegalStateException("Sprite " + resourceId + " is not pinned and no cells have been reserved");
+
+        int cell = cells.get(resourceId, -1);
+        if(cell == -1)
+            cell = load(resourceId);
+        moveToFront(cell);
+        return cellRegions[cell];
+    }
+
+    /**
+     * Decodes a sprite into the least recently used cell, evicting whatever was there.
+     * @param resourceId The drawable resource id of the sprite.
+     * @return The index of the cell the sprite was loaded into.
+     */
+    private int load(final int resourceId)
+    {
+        final int cell = leastRecent;
+        if(cellOwner[cell] != 0)
+            cells.delete(cellOwner[cell]);
+
+        final Rect bounds = cellBounds[cell];
+        final Rect region = cellRegions[cell];
+        final Bitmap sprite = loader.decode(resourceId);
+        region.set(bounds.left, bounds.top,
+                   bounds.left + Math.min(sprite.getWidth(), bounds.width()),
+                   bounds.top + Math.min(sprite.getHeight(), bounds.height()));
+        atlasCanvas.drawRect(bounds, clearPaint);
+        atlasCanvas.drawBitmap(sprite, null, region, copyPaint);
+        loader.release(sprite);
+
+        cellOwner[cell] = resourceId;
+        cells.put(resourceId, cell);
+        return cell;
+    }
+
+    /**
+     * Marks a cell as the most recently used.
+     * @param cell The index of the cell.
+     */
+    private void moveToFront(final int cell)
+    {
+        if(cell == mostRecent)
+            return;
+        final int previous = cellPrevious[cell];
+        final int next = cellNext[cell];
+        cellNext[previous] = next;
+        if(next != -1)
+            cellPrevious[next] = previous;
+        else
+            leastRecent = previous;
+        cellPrevious[cell] = -1;
+        cellNext[cell] = mostRecent;
+        cellPrevious[mostRecent] = cell;
+        mostRecent = cell;
+    }
+
+}
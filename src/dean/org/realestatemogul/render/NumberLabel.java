@@ -0,0 +1,117 @@
+package dean.org.realestatemogul.render;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+
+import dean.org.realestatemogul.economy.Money;
+import dean.org.realestatemogul.text.NumberFormatter;
+
+/**
+ * A piece of text made of a fixed prefix, a number and a fixed suffix, such as "Price: £1,150".
+ * The text is kept in a preallocated buffer that is only rewritten when the number changes,
+ * and its width is only measured again when the number or text size changes, so drawing
+ * it every frame creates no garbage.
+ */
+public class NumberLabel {
+
+    private final char[] text; // Buffer holding the prefix, number and suffix
+    private final int prefixLength; // The number of characters in the prefix
+    private final char[] suffix; // Characters drawn after the number
+    private int length = 0; // The number of characters currently in use
+    private long value = 0; // The whole number currently held in the buffer
+    private double mantissa = 0; // The mantissa of the amount of money currently held in the buffer
+    private int exponent = 0; // The exponent of the amount of money currently held in the buffer
+    private int held = NOTHING; // What kind of number the buffer holds
+
+    private static final int NOTHING = 0;
+    private static final int WHOLE_NUMBER = 1;
+    private static final int MONEY = 2;
+    private float width = 0; // The measured width of the text
+    private float measuredSize = -1; // The text size the width was measured at, -1 when it needs measuring
+
+    /**
+     * Constructor for creating a label.
+     * @param prefix Text drawn before the number.
+     * @param suffix Text drawn after the number.
+     */
+    public NumberLabel(final String prefix, final String suffix)
+    {
+        this.prefixLength = prefix.length();
+        this.suffix = suffix.toCharArray();
+        this.text = new char[prefixLength + NumberFormatter.MAX_LENGTH + this.suffix.length];
+        prefix.getChars(0, prefixLength, text, 0);
+    }
+
+    /**
+     * Sets the number shown by the label, the text is only rebuilt if it has changed.
+     * @param value The number to show.
+     */
+    public void setValue(final long value)
+    {
+        if(held == WHOLE_NUMBER && this.value == value)
+            return;
+        this.value = value;
+        held = WHOLE_NUMBER;
+        finish(NumberFormatter.format(value, text, prefixLength));
+    }
+
+    /**
+     * Sets the amount of money shown by the label, the text is only rebuilt if it has changed.
+     * @param value The amount to show.
+     */
+    public void setValue(final Money value)
+    {
+        if(held == MONEY && mantissa == value.getMantissa() && exponent == value.getExponent())
+            return;
+        mantissa = value.getMantissa();
+        exponent = value.getExponent();
+        held = MONEY;
+        finish(NumberFormatter.format(value, text, prefixLength));
+    }
+
+    /**
+     * Appends the suffix after a newly formatted number and marks the width as needing measuring.
+     * @param digits The number of characters the number took up.
+     */
+    private void finish(final int digits)
+    {
+        length = prefixLength + digits;
+        System.arraycopy(suffix, 0, text, length, suffix.length);
+        length += suffix.length;
+        measuredSize = -1;
+    }
+
+    /**
+     * Gets the width of the label, measuring it only if it has changed since it was last measured.
+     * @param paint The paint the label will be drawn with.
+     * @return The width of the text in pixels.
+     */
+    public float getWidth(final Paint paint)
+    {
+        if(measuredSize != paint.getTextSize())
+        {
+            width = paint.measureText(text, 0, length);
+            measuredSize = paint.getTextSize();
+        }
+        return width;
+    }
+
+    /**
+     * Draws the label with its left edge at the given position.
+     * @param canvas The canvas to draw onto.
+     * @param x The x coordinate of the left of the text.
+     * @param y The y coordinate of the baseline of the text.
+     * @param paint The paint to draw the text with.
+     */
+    public void draw(final Canvas canvas, final float x, final float y, final Paint paint)
+    {
+        canvas.drawText(text, 0, length, x, y, paint);
+    }
+
+    @Override
+    public String toString()
+    {
+        return new String(text, 0, length);
+    }
+
+}
@@ -0,0 +1,119 @@
+package dean.org.realestatemogul.render;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+import dean.org.realestatemogul.profile.Histogram;
+import dean.org.realestatemogul.profile.Profiler;
+import dean.org.realestatemogul.text.NumberFormatter;
+
+/**
+ * A debug overlay showing what the profiler has recorded, one line per phase plus a line for jank and allocations.
+ * The text is rebuilt into preallocated buffers a couple of times a second rather than every frame,
+ * so showing the overlay doesn't change the numbers it shows.
+ */
+public class ProfilerOverlay {
+
+    private final Profiler profiler; // The profiler being shown
+    private final Rect bounds; // The region of the game the overlay is drawn in
+    private final char[][] lines = new char[Profiler.PHASE_COUNT + 1][LINE_LENGTH]; // The text of each line
+    private final int[] lengths = new int[lines.length]; // The number of characters used on each line
+    private final Paint backgroundPaint = new Paint(); // Paint for the translucent background
+    private long nextRefresh = 0; // When the text is next rebuilt, in nanoseconds
+
+    private static final int LINE_LENGTH = 96; // The most characters on a line
+    private static final long REFRESH_PERIOD = 500000000L; // Half a second in nanoseconds
+    private static final float TEXT_SIZE = 22f;
+    private static final int LINE_HEIGHT = 28;
+
+    /**
+     * Constructor for creating an overlay.
+     * @param profiler The profiler to show.
+     * @param left The x coordinate of the left of the overlay in game coordinates.
+     * @param top The y coordinate of the top of the overlay in game coordinates.
+     * @param width The width of the overlay.
+     */
+    public ProfilerOverlay(final Profiler profiler, final int left, final int top, final int width)
+    {
+        this.profiler = profiler;
+        this.bounds = new Rect(left, top, left + width, top + LINE_HEIGHT * lines.length + 10);
+        backgroundPaint.setColor(Color.argb(160, 0, 0, 0));
+    }
+
+    /**
+     * Rebuilds the text if it's due to be refreshed.
+     * @param now The current time in nanoseconds.
+     * @return true if the text changed and the overlay needs to be redrawn.
+     */
+    public boolean update(final long now)
+    {
+        if(now - nextRefresh < 0)
+            return false;
+        nextRefresh = now + REFRESH_PERIOD;
+        for (int phase = 0; phase < Profiler.PHASE_COUNT; phase++)
+        {
+            final Histogram histogram = profiler.getHistogram(phase);
+            final char[] line = lines[phase];
+            int length = append(line, 0, Profiler.getPhaseName(phase));
+            length = append(line, length, " p50 ");
+            length += NumberFormatter.format(histogram.getValueAtPercentile(50) / 1000, line, length);
+            length = append(line, length, "us p99 ");
+            length += NumberFormatter.format(histogram.getValueAtPercentile(99) / 1000, line, length);
+            length = append(line, length, "us max ");
+            length += NumberFormatter.format(histogram.getMax() / 1000, line, length);
+            lengths[phase] = append(line, length, "us");
+        }
+        final char[] line = lines[Profiler.PHASE_COUNT];
+        int length = append(line, 0, "jank ");
+        length += NumberFormatter.format(profiler.getJankCount(), line, length);
+        length = append(line, length, "/");
+        length += NumberFormatter.format(profiler.getFrameCount(), line, length);
+        length = append(line, length, " alloc/frame p99 ");
+        length += NumberFormatter.format(profiler.getAllocations().getValueAtPercentile(99), line, length);
+        lengths[Profiler.PHASE_COUNT] = length;
+        return true;
+    }
+
+    /**
+     * Draws the overlay.
+     * @param canvas The canvas to draw onto.
+     * @param paint The paint to draw the text with, its colour and text size are restored afterwards.
+     */
+    public void draw(final Canvas canvas, final Paint paint)
+    {
+        final int colour = paint.getColor();
+        final float textSize = paint.getTextSize();
+        canvas.drawRect(bounds, backgroundPaint);
+        paint.setColor(Color.WHITE);
+        paint.setTextSize(TEXT_SIZE);
+        for (int index = 0; index < lines.length; index++)
+            canvas.drawText(lines[index], 0, lengths[index], bounds.left + 10, bounds.top + LINE_HEIGHT * (index + 1), paint);
+        paint.setColor(colour);
+        paint.setTextSize(textSize);
+    }
+
+    /**
+     * Gets the region of the game the overlay is drawn in.
+     * @return The bounds, this is the live rectangle so it shouldn't be modified.
+     */
+    public Rect getBounds()
+    {
+        return bounds;
+    }
+
+    /**
+     * Copies text onto the end of a line.
+     * @param line The line to write into.
+     * @param offset Where to start writing.
+     * @param text The text to copy.
+     * @return The length of the line after the text.
+     */
+    private static int append(final char[] line, final int offset, final String text)
+    {
+        text.getChars(0, text.length(), line, offset);
+        return offset + text.length();
+    }
+
+}
@@ -0,0 +1,82 @@
+package dean.org.realestatemogul.render;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+import android.graphics.Rect;
+
+import dean.org.realestatemogul.asset.BitmapLoader;
+
+/**
+ * A transparent bitmap split into equally sized slots that content which rarely changes is rasterised into,
+ * so each frame draws a slot with a single blit instead of redrawing its text and sprites.
+ * The owner decides what each slot holds and when it needs rasterising again.
+ */
+public class StaticLayer {
+
+    private final Bitmap layer; // The bitmap every slot is rasterised into, stacked from the top
+    private final Canvas layerCanvas; // Canvas for rasterising into the layer
+    private final Paint clearPaint = new Paint(); // Paint used to wipe a slot before it is rasterised again
+    private final Rect source = new Rect(); // Reused source rectangle so drawing never allocates
+    private final Rect destination = new Rect(); // Reused destination rectangle so drawing never allocates
+    private final int slotWidth; // The width of each slot
+    private final int slotHeight; // The height of each slot
+
+    /**
+     * Constructor for creating an empty layer.
+     * @param loader The loader the layer's bitmap is made with, so it counts towards the bitmap budget.
+     * @param slots The number of slots.
+     * @param slotWidth The width of each slot.
+     * @param slotHeight The height of each slot.
+     */
+    public StaticLayer(final BitmapLoader loader, final int slots, final int slotWidth, final int slotHeight)
+    {
+        this.slotWidth = slotWidth;
+        this.slotHeight = slotHeight;
+        layer = loader.create(slotWidth, slotHeight * slots, Bitmap.Config.ARGB_8888);
+        layerCanvas = new Canvas(layer);
+        clearPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.CLEAR));
+    }
+
+    /**
+     * Wipes a slot and prepares to rasterise into it, {@link #end()} must be called once it's drawn.
+     * @param slot The index of the slot.
+     * @return A canvas clipped to the slot with its origin at the top left of the slot.
+     */
+    public Canvas begin(final int slot)
+    {
+        final int top = slot * slotHeight;
+        layerCanvas.save();
+        layerCanvas.clipRect(0, top, slotWidth, top + slotHeight);
+        layerCanvas.translate(0, top);
+        layerCanvas.drawRect(0, 0, slotWidth, slotHeight, clearPaint);
+        return layerCanvas;
+    }
+
+    /**
+     * Finishes rasterising a slot.
+     */
+    public void end()
+    {
+        layerCanvas.restore();
+    }
+
+    /**
+     * Draws a slot.
+     * @param canvas The canvas to draw onto.
+     * @param slot The index of the slot.
+     * @param x The x coordinate to draw the slot at.
+     * @param y The y coordinate to draw the slot at.
+     * @param paint The paint to draw the slot with.
+     */
+    public void draw(final Canvas canvas, final int slot, final int x, final int y, final Paint paint)
+    {
+        final int top = slot * slotHeight;
+        source.set(0, top, slotWidth, top + slotHeight);
+        destination.set(x, y, x + slotWidth, y + slotHeight);
+        canvas.drawBitmap(layer, source, destination, paint);
+    }
+
+}
@@ -0,0 +1,105 @@
+package dean.org.realestatemogul.render;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+/**
+ * Maps the fixed size virtual game space onto the current surface.
+ * The transform is only rebuilt when the surface size changes and is shared between
+ * presenting frames and scaling touches back down into game coordinates.
+ */
+public class Viewport {
+
+    private final int gameWidth; // The width of the virtual game space
+    private final int gameHeight; // The height of the virtual game space
+    private final Matrix transform = new Matrix(); // Game space to surface space
+    private final Matrix inverse = new Matrix(); // Surface space to game space
+    private final float[] point = new float[2]; // Reused point for mapping touches
+    private final RectF region = new RectF(); // Reused rectangle for mapping dirty regions
+    private final Paint filter = new Paint(Paint.FILTER_BITMAP_FLAG); // Paint used to filter the scaled frame
+
+    private int surfaceWidth = 0; // The width of the surface the transform was built for
+    private int surfaceHeight = 0; // The height of the surface the transform was built for
+
+    /**
+     * Constructor for creating a viewport over a virtual game space.
+     * @param gameWidth The width of the game.
+     * @param gameHeight The height of the game.
+     */
+    public Viewport(final int gameWidth, final int gameHeight)
+    {
+        this.gameWidth = gameWidth;
+        this.gameHeight = gameHeight;
+    }
+
+    /**
+     * Rebuilds the transform for a new surface size, does nothing if the size hasn't changed.
+     * @param width The width of the surface.
+     * @param height The height of the surface.
+     * @return true if the transform was rebuilt.
+     */
+    public synchronized boolean resize(final int width, final int height)
+    {
+        if(width == surfaceWidth && height == surfaceHeight)
+            return false;
+        surfaceWidth = width;
+        surfaceHeight = height;
+        transform.setScale((float) width / gameWidth, (float) height / gameHeight);
+        transform.invert(inverse);
+        return true;
+    }
+
+    /**
+     * Draws a frame from the game space onto the surface canvas.
+     * @param canvas The canvas of the surface.
+     * @param frame The frame rendered in game space.
+     */
+    public synchronized void present(final Canvas canvas, final Bitmap frame)
+    {
+        canvas.drawBitmap(frame, transform, filter);
+    }
+
+    /**
+     * Scales a region of the game up to the surface, rounding outwards and padding by a pixel
+     * so that filtering at the edges of the region is included.
+     * @param bounds The region in game space.
+     * @param out The rectangle to store the region in surface space in.
+     */
+    public synchronized void toSurface(final Rect bounds, final Rect out)
+    {
+        region.set(bounds);
+        transform.mapRect(region);
+        region.roundOut(out);
+        out.inset(-1, -1);
+        out.intersect(0, 0, surfaceWidth, surfaceHeight);
+    }
+
+    /**
+     * Scales a point on the surface down to the game. The returned array is reused
+     * between calls, so it should only be used from the thread that handles touches.
+     * @param x The x coordinate on the surface.
+     * @param y The y coordinate on the surface.
+     * @return The x and y coordinates of the point in game space.
+     */
+    public synchronized float[] toGame(final float x, final float y)
+    {
+        point[0] = x;
+        point[1] = y;
+        inverse.mapPoints(point);
+        return point;
+    }
+
+    /**
+     * Whether or not the viewport has been sized to a surface yet.
+     * @return true if a transform has been built.
+     */
+    public synchronized boolean isReady()
+    {
+        return surfaceWidth > 0 && surfaceHeight > 0;
+    }
+
+}